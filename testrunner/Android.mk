@@ -11,7 +11,8 @@ LOCAL_DEX_PREOPT := false
 LOCAL_SRC_FILES += $(call all-java-files-under, src/)
 LOCAL_SRC_FILES += $(call all-java-files-under, ../testutils/src/)
 LOCAL_SRC_FILES += \
-        src/com/baidu/cafe/remote/IRemoteArms.aidl
+        src/com/baidu/cafe/remote/IRemoteArms.aidl \
+        src/com/baidu/cafe/remote/IArmsCallback.aidl
 
 LOCAL_STATIC_JAVA_LIBRARIES := librobotium libzutubi
 
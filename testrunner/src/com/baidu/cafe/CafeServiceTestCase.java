@@ -16,6 +16,7 @@
 
 package com.baidu.cafe;
 
+import com.baidu.cafe.local.Log;
 import com.baidu.cafe.remote.Armser;
 
 import android.app.Service;
@@ -40,8 +41,7 @@ public class CafeServiceTestCase<T extends Service> extends ServiceTestCase<T> {
     protected void setUp() throws Exception {
         super.setUp();
         mPackageName = this.getClass().getName();
-        remote = new Armser(getContext());
-        remote.bind(getContext());
+        remote = Armser.getSharedArmser(getContext());
         mTearDownHelper = new TearDownHelper(remote);
     }
 
@@ -51,6 +51,9 @@ public class CafeServiceTestCase<T extends Service> extends ServiceTestCase<T> {
         mTearDownHelper.killWindowsFromBirthToNow();
         mTearDownHelper = null;
         remote.waitForAllDumpCompleted();
+        if (remote.isCallStatisticsEnabled()) {
+            Log.i("call statistics of " + getName() + ":\n" + remote.getCallStatistics(true));
+        }
         remote = null;
         super.tearDown();
     }
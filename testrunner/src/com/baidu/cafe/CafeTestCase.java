@@ -87,8 +87,7 @@ public class CafeTestCase<T extends Activity> extends ActivityInstrumentationTes
         super.setUp();
         Log.init(this, Log.DEFAULT);
         mTargetFilesDir = getInstrumentation().getTargetContext().getFilesDir().toString();
-        remote = new Armser(getInstrumentation().getContext());
-        remote.bind(getInstrumentation().getContext());
+        remote = Armser.getSharedArmser(getInstrumentation().getContext());
         //launchActivityIfNotAvailable();
         remote.setStatusBarHeight(getStatusBarHeight());
         String command = "chmod 777 " + mTargetFilesDir;
@@ -181,8 +180,11 @@ public class CafeTestCase<T extends Activity> extends ActivityInstrumentationTes
             e.printStackTrace();
         }
 
-        // It costs too much time.
-        //remote.unbind(getInstrumentation().getContext());
+        if (remote.isCallStatisticsEnabled()) {
+            Log.i("call statistics of " + getName() + ":\n" + remote.getCallStatistics(true));
+        }
+
+        // remote is shared by the following tests, so it is not unbound.
 
         if (orignal != null) {
             Thread.setDefaultUncaughtExceptionHandler(orignal);
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import android.os.IBinder;
+import android.os.RemoteException;
+
+/**
+ * Result of an async call of Armser. Arms runs the operation in background
+ * and calls onResult() back through binder when it finishes, e.g.
+ *
+ * <pre>
+ * ArmsFuture installed = armser.installApkAsync(&quot;/sdcard/a.apk&quot;, 60000, null);
+ * // do local ui work here
+ * assertTrue(installed.get());
+ * </pre>
+ *
+ * The future completes with false if Arms dies before calling back, so
+ * get() does not block forever. A remote operation can not be cancelled.
+ *
+ * Arms runs the async installs and screen caps one by one, so a long
+ * install delays every screen cap issued after it. waitforTopActivityAsync()
+ * runs apart from them.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class ArmsFuture extends IArmsCallback.Stub implements Future<Boolean>,
+        IBinder.DeathRecipient {
+    private CountDownLatch mDone     = new CountDownLatch(1);
+    private Listener       mListener = null;
+    private boolean        mSuccess  = false;
+    private String         mMessage  = null;
+    private IBinder        mArms     = null;
+
+    /**
+     * Called on a binder thread of the test process when the operation
+     * finishes.
+     */
+    public interface Listener {
+        void onResult(boolean success, String message);
+    }
+
+    ArmsFuture(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * complete with false if arms dies before calling back
+     *
+     * @param arms
+     *            binder of Arms which runs the operation
+     * @throws RemoteException
+     *             if Arms is already dead
+     */
+    synchronized void linkToDeath(IBinder arms) throws RemoteException {
+        arms.linkToDeath(this, 0);
+        mArms = arms;
+    }
+
+    public void binderDied() {
+        onResult(false, "Arms died before the operation finished");
+    }
+
+    public void onResult(boolean success, String message) {
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            mSuccess = success;
+            mMessage = message;
+            mDone.countDown();
+            if (mArms != null) {
+                mArms.unlinkToDeath(this, 0);
+                mArms = null;
+            }
+        }
+        if (mListener != null) {
+            mListener.onResult(success, message);
+        }
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public boolean isDone() {
+        return 0 == mDone.getCount();
+    }
+
+    /**
+     * @return true if the operation succeeded, false if it failed or Arms
+     *         died
+     */
+    public Boolean get() throws InterruptedException {
+        mDone.await();
+        return mSuccess;
+    }
+
+    public Boolean get(long timeout, TimeUnit unit) throws InterruptedException,
+            TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return mSuccess;
+    }
+
+    /**
+     * @return the argument of the call, or the error if the call failed
+     */
+    public String getMessage() {
+        return mMessage;
+    }
+}
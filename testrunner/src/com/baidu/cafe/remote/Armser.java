@@ -16,7 +16,14 @@
 
 package com.baidu.cafe.remote;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import android.content.ComponentName;
 import android.content.Context;
@@ -43,25 +50,45 @@ import com.baidu.cafe.local.LocalLib;
  */
 public class Armser {
 
-    private IRemoteArms         iArms                            = null;
-    private Context             mContext                         = null;
-    private MyServiceConnection serviceConnection                = null;
-    private int                 mScreenHeight                    = 0;
-    private int                 mScreenWidth                     = 0;
+    private volatile IRemoteArms iArms                           = null;
+    private volatile IRemoteArms mRemoteArms                     = null;
+    private Context              mContext                        = null;
+    private Context              mBindContext                    = null;
+    private MyServiceConnection  serviceConnection               = null;
+    private volatile CountDownLatch mConnected                   = new CountDownLatch(1);
+    private int                  mScreenHeight                   = 0;
+    private int                  mScreenWidth                    = 0;
+    private CallStatistics       mCallStatistics                 = new CallStatistics();
+    private PropertyCache        mPropertyCache                  = new PropertyCache();
 
-    public final static int     SCREEN_BRIGHTNESS_MODE_AUTOMATIC = Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC;
-    public final static int     SCREEN_BRIGHTNESS_MODE_MANUAL    = Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL;
-    public final static int     GPS_PROVIDER                     = 0;
-    public final static int     NETWORK_PROVIDER                 = 1;
+    private static Armser        mSharedArmser                   = null;
+    private final static long    BIND_TIMEOUT                    = 4000;
+
+    /**
+     * ttl of a cached property which may be changed by others
+     */
+    private final static long    PROPERTY_TTL                    = 1000;
+
+    public final static int      SCREEN_BRIGHTNESS_MODE_AUTOMATIC = Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC;
+    public final static int      SCREEN_BRIGHTNESS_MODE_MANUAL   = Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL;
+    public final static int      GPS_PROVIDER                    = 0;
+    public final static int      NETWORK_PROVIDER                = 1;
 
     private class MyServiceConnection implements ServiceConnection {
 
         public void onServiceConnected(ComponentName name, IBinder service) {
-            iArms = IRemoteArms.Stub.asInterface(service);
-
+            mRemoteArms = IRemoteArms.Stub.asInterface(service);
+            iArms = wrap(mRemoteArms);
+            mConnected.countDown();
         }
 
         public void onServiceDisconnected(ComponentName name) {
+            // the binding is kept, so the service will be connected again
+            // after it is restarted
+            mConnected = new CountDownLatch(1);
+            // the device may be rebooted
+            mPropertyCache.clear();
+            mRemoteArms = null;
             iArms = null;
         }
     }
@@ -75,40 +102,124 @@ public class Armser {
         serviceConnection = new MyServiceConnection();
     }
 
+    /**
+     * Get the Armser shared by all tests of the process. It is bound at the
+     * first call, and checked at every call, so a test does not pay for
+     * binding unless the connection has been broken.
+     * 
+     * @param context
+     *            context to bind with
+     * @return the shared Armser
+     */
+    public static synchronized Armser getSharedArmser(Context context) {
+        if (null == mSharedArmser) {
+            mSharedArmser = new Armser(context);
+            if (!mSharedArmser.bind(context)) {
+                Log.i("Armser", "bind failed, it will be bound again at the next call");
+            }
+        } else if (!mSharedArmser.isConnected()) {
+            Log.i("Armser", "connection is broken, rebind");
+            mSharedArmser.rebind();
+        }
+        return mSharedArmser;
+    }
+
+    /**
+     * @return true if the service is connected and alive
+     */
+    public boolean isConnected() {
+        IRemoteArms arms = iArms;
+        return arms != null && arms.asBinder().pingBinder();
+    }
+
+    /**
+     * wait for onServiceConnected() which comes from the main thread, so it
+     * can not be called on the main thread
+     */
     public boolean bind(Context context) {
+        mBindContext = context;
+        mConnected = new CountDownLatch(1);
         context.bindService(new Intent(IRemoteArms.class.getName()), serviceConnection,
                 Context.BIND_AUTO_CREATE);
-        int count = 0;
-        try {
-            while (null == iArms) {
-                Thread.sleep(200);
-                count++;
-                if (count == 20) { //timeout = 4 seconds
-                    context.unbindService(serviceConnection);
-                    return false;
-                }
-            }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        if (!awaitConnected()) {
+            context.unbindService(serviceConnection);
+            mBindContext = null;
+            return false;
         }
         return true;
     }
 
+    /**
+     * onServiceDisconnected() is not called after unbindService(), so there
+     * is nothing to wait for.
+     */
     public boolean unbind(Context context) {
         context.unbindService(serviceConnection);
-        int count = 0;
+        mBindContext = null;
+        mRemoteArms = null;
+        iArms = null;
+        return true;
+    }
+
+    private boolean awaitConnected() {
         try {
-            while (null != iArms) {
-                Thread.sleep(200);
-                count++;
-                if (count == 20) {//timeout = 4 seconds
-                    return false;
-                }
-            }
+            return mConnected.await(BIND_TIMEOUT, TimeUnit.MILLISECONDS);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
-        return true;
+        return null != iArms;
+    }
+
+    /**
+     * Drop the cached device properties. Armser drops them when it changes a
+     * property, call it after changing one in other ways, e.g. by adb.
+     */
+    public void invalidatePropertyCache() {
+        mPropertyCache.clear();
+    }
+
+    /**
+     * Wrap the interface with a proxy which times every call when call
+     * statistics is enabled, so that no method of Armser has to be changed.
+     */
+    private IRemoteArms wrap(final IRemoteArms arms) {
+        if (null == arms || !mCallStatistics.isEnabled()) {
+            return arms;
+        }
+        return (IRemoteArms) Proxy.newProxyInstance(IRemoteArms.class.getClassLoader(),
+                new Class<?>[] { IRemoteArms.class }, new InvocationHandler() {
+
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                            throws Throwable {
+                        if ("asBinder".equals(method.getName())) {
+                            return arms.asBinder();
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            return method.invoke(arms, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            mCallStatistics.record(method.getName(), System.nanoTime() - start);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * wait for the system to reconnect the restarted service, bind again if
+     * it does not
+     */
+    private boolean rebind() {
+        if (null == mBindContext) {
+            return bind(mContext);
+        }
+        if (awaitConnected() && isConnected()) {
+            return true;
+        }
+        Context context = mBindContext;
+        unbind(context);
+        return bind(context);
     }
 
     private void print(String message) {
@@ -413,9 +524,13 @@ public class Armser {
      * get build version
      */
     public String getBuildVersion() {
-        String str = null;
+        String str = (String) mPropertyCache.get("getBuildVersion");
+        if (str != null) {
+            return str;
+        }
         try {
             str = iArms.getBuildVersion();
+            mPropertyCache.put("getBuildVersion", str, PropertyCache.BOOT);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -428,9 +543,13 @@ public class Armser {
      * e.g. "32.41.00.32H_5.08.00.04"
      */
     public String getBaseBandVersion() {
-        String str = null;
+        String str = (String) mPropertyCache.get("getBaseBandVersion");
+        if (str != null) {
+            return str;
+        }
         try {
-            str = iArms.getBuildVersion();
+            str = iArms.getBaseBandVersion();
+            mPropertyCache.put("getBaseBandVersion", str, PropertyCache.BOOT);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -443,9 +562,13 @@ public class Armser {
      * Full BMOS on Passion
      */
     public String getDeviceModel() {
-        String str = null;
+        String str = (String) mPropertyCache.get("getDeviceModel");
+        if (str != null) {
+            return str;
+        }
         try {
             str = iArms.getDeviceModel();
+            mPropertyCache.put("getDeviceModel", str, PropertyCache.BOOT);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -459,9 +582,13 @@ public class Armser {
      *         e.g "full_passion-userdebug 2.3.3 GRI40 1.2.23-11395 test-keys"
      */
     public String getBuildNumber() {
-        String str = null;
+        String str = (String) mPropertyCache.get("getBuildNumber");
+        if (str != null) {
+            return str;
+        }
         try {
             str = iArms.getBuildNumber();
+            mPropertyCache.put("getBuildNumber", str, PropertyCache.BOOT);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -472,9 +599,13 @@ public class Armser {
      * get kernel version
      */
     public String getKernelVersion() {
-        String str = null;
+        String str = (String) mPropertyCache.get("getKernelVersion");
+        if (str != null) {
+            return str;
+        }
         try {
             str = iArms.getKernelVersion();
+            mPropertyCache.put("getKernelVersion", str, PropertyCache.BOOT);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -719,6 +850,7 @@ public class Armser {
      * reboot device
      */
     public void reboot() {
+        mPropertyCache.clear();
         try {
             iArms.reboot();
         } catch (RemoteException e) {
@@ -730,6 +862,7 @@ public class Armser {
      * reboot device to recovery mode
      */
     public void rebootToRecoveryMode() {
+        mPropertyCache.clear();
         try {
             iArms.rebootToRecoveryMode();
         } catch (RemoteException e) {
@@ -741,6 +874,7 @@ public class Armser {
      * reboot device to bootloader
      */
     public void rebootToBootloader() {
+        mPropertyCache.clear();
         try {
             iArms.rebootToBootloader();
         } catch (RemoteException e) {
@@ -846,9 +980,14 @@ public class Armser {
      * get width of screen
      */
     public int getDisplayX() {
+        Integer cached = (Integer) mPropertyCache.get("getDisplayX");
+        if (cached != null) {
+            return cached;
+        }
         int i = 0;
         try {
             i = iArms.getDisplayX();
+            mPropertyCache.put("getDisplayX", i, PROPERTY_TTL);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -859,9 +998,14 @@ public class Armser {
      * get height of screen
      */
     public int getDisplayY() {
+        Integer cached = (Integer) mPropertyCache.get("getDisplayY");
+        if (cached != null) {
+            return cached;
+        }
         int i = 0;
         try {
             i = iArms.getDisplayY();
+            mPropertyCache.put("getDisplayY", i, PROPERTY_TTL);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -872,9 +1016,14 @@ public class Armser {
      * NOT READY YET, COMING SOON...
      */
     public int getScreenBrightness() {
+        Integer cached = (Integer) mPropertyCache.get("getScreenBrightness");
+        if (cached != null) {
+            return cached;
+        }
         int i = 0;
         try {
             i = iArms.getScreenBrightness();
+            mPropertyCache.put("getScreenBrightness", i, PROPERTY_TTL);
         } catch (RemoteException e) {
             e.printStackTrace();
         }
@@ -904,6 +1053,7 @@ public class Armser {
      */
 
     public void setScreenBrightness(int brightness) {
+        mPropertyCache.invalidate("getScreenBrightness");
         try {
             iArms.setScreenBrightness(brightness);
         } catch (RemoteException e) {
@@ -939,6 +1089,23 @@ public class Armser {
         return str;
     }
 
+    /**
+     * get IMEI of the device
+     */
+    public String getImei() {
+        String str = (String) mPropertyCache.get("getImei");
+        if (str != null) {
+            return str;
+        }
+        try {
+            str = iArms.getImei();
+            mPropertyCache.put("getImei", str, PropertyCache.BOOT);
+        } catch (RemoteException e) {
+            e.printStackTrace();
+        }
+        return str;
+    }
+
     /**
      * get current network type
      * 
@@ -2077,6 +2244,309 @@ public class Armser {
         }
     }
 
+    /**
+     * get statistics of the commands sent to monkey server
+     * 
+     * @return count, failure count and average latency of each type of
+     *         command, such as "touch[20, 0, 1.2ms] key[2, 0, 3.5ms]"
+     */
+    public String getMonkeyStatistics() {
+        String ret = "";
+        try {
+            ret = iArms.getMonkeyStatistics();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
+    /**
+     * play a whole gesture on the remote side at once, e.g. a 300ms swipe
+     * and a 500ms pinch
+     * 
+     * <pre>
+     * performGesture(Gesture.swipe(100, 100, 500, 200, 20, 300));
+     * performGesture(Gesture.pinch(240, 400, 100, 300, 500));
+     * </pre>
+     * 
+     * Gestures of more than one pointer are injected by instrumentation, which
+     * needs Arms to be signed by platform signature.
+     * 
+     * @param gesture
+     *            events with their times from the start of the gesture
+     */
+    public void performGesture(Gesture gesture) {
+        try {
+            iArms.performGesture(gesture);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * install an apk in background, it returns at once. Async calls run one
+     * by one in the order of calling.
+     * 
+     * @param filename
+     *            path of the apk on device
+     * @param timeout
+     *            max time of the installation in ms
+     * @param listener
+     *            called when it finishes, null if not needed
+     * @return the result of installApkSync()
+     */
+    public ArmsFuture installApkAsync(String filename, long timeout,
+            ArmsFuture.Listener listener) {
+        ArmsFuture future = new ArmsFuture(listener);
+        try {
+            future.linkToDeath(iArms.asBinder());
+            iArms.installApkAsync(filename, timeout, future);
+        } catch (Exception e) {
+            e.printStackTrace();
+            future.onResult(false, e.toString());
+        }
+        return future;
+    }
+
+    /**
+     * wait for an activity to be on top in background, it returns at once
+     * 
+     * @param className
+     *            class name of the activity
+     * @param timeout
+     *            max time to wait in ms
+     * @param listener
+     *            called when it finishes, null if not needed
+     * @return the result of waitforTopActivity()
+     */
+    public ArmsFuture waitforTopActivityAsync(String className, long timeout,
+            ArmsFuture.Listener listener) {
+        ArmsFuture future = new ArmsFuture(listener);
+        try {
+            future.linkToDeath(iArms.asBinder());
+            iArms.waitforTopActivityAsync(className, timeout, future);
+        } catch (Exception e) {
+            e.printStackTrace();
+            future.onResult(false, e.toString());
+        }
+        return future;
+    }
+
+    /**
+     * take a screen cap in background, it returns at once
+     * 
+     * @param prefix
+     *            means prefix string of png
+     * @param listener
+     *            called when it finishes, null if not needed
+     * @return true if the screen cap has been saved
+     */
+    public ArmsFuture screenCapAsync(String prefix, ArmsFuture.Listener listener) {
+        ArmsFuture future = new ArmsFuture(listener);
+        try {
+            future.linkToDeath(iArms.asBinder());
+            iArms.screenCapAsync(prefix, future);
+        } catch (Exception e) {
+            e.printStackTrace();
+            future.onResult(false, e.toString());
+        }
+        return future;
+    }
+
+    /**
+     * take count screen caps at a fixed interval, e.g. to check an animation
+     * 
+     * @param prefix
+     *            means prefix string of png, frames are saved as "prefix_0",
+     *            "prefix_1"...
+     * @param count
+     *            number of frames, at least 1
+     * @param interval
+     *            time between two frames in ms, not negative
+     * @return true if all of the frames have been saved, false if the
+     *         arguments are invalid
+     */
+    public boolean screenCapBurst(String prefix, int count, long interval) {
+        boolean ret = false;
+        try {
+            ret = iArms.screenCapBurst(prefix, count, interval);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
+    /**
+     * take a burst of screen caps in background, it returns at once
+     * 
+     * @param prefix
+     *            means prefix string of png
+     * @param count
+     *            number of frames, at least 1
+     * @param interval
+     *            time between two frames in ms, not negative
+     * @param listener
+     *            called when it finishes, null if not needed
+     * @return true if all of the frames have been saved
+     */
+    public ArmsFuture screenCapBurstAsync(String prefix, int count, long interval,
+            ArmsFuture.Listener listener) {
+        ArmsFuture future = new ArmsFuture(listener);
+        try {
+            future.linkToDeath(iArms.asBinder());
+            iArms.screenCapBurstAsync(prefix, count, interval, future);
+        } catch (Exception e) {
+            e.printStackTrace();
+            future.onResult(false, e.toString());
+        }
+        return future;
+    }
+
+    /**
+     * get several device states in one call instead of one call per state,
+     * e.g. at the start and the end of a test
+     * 
+     * @param fields
+     *            names in DeviceSnapshot such as DeviceSnapshot.BATTERY_LEVEL,
+     *            null for all of them
+     * @return the snapshot, null if the call failed
+     */
+    public DeviceSnapshot getDeviceSnapshot(String[] fields) {
+        DeviceSnapshot ret = null;
+        try {
+            ret = iArms.getDeviceSnapshot(fields);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
+    /**
+     * Record count and latency histogram of every remote call. Armser records
+     * the round trip and Arms records the execution, so the difference of
+     * them is the cost of IPC. It is disabled by default.
+     * 
+     * @param enabled
+     *            true to start recording, false to stop
+     */
+    public void setCallStatisticsEnabled(boolean enabled) {
+        mCallStatistics.setEnabled(enabled);
+        iArms = wrap(mRemoteArms);
+        try {
+            mRemoteArms.setCallStatisticsEnabled(enabled);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public boolean isCallStatisticsEnabled() {
+        return mCallStatistics.isEnabled();
+    }
+
+    /**
+     * get the report of call statistics, methods are sorted by total time
+     * 
+     * @param reset
+     *            true to clear the statistics after report
+     * @return round trip and execution of each method, such as
+     *         "getTopActivity[12, total 40.9ms, avg 3.41ms, p50<4ms, p90<8ms, max 20.12ms]"
+     */
+    public String getCallStatistics(boolean reset) {
+        String execution = "";
+        try {
+            execution = mRemoteArms.getCallStatistics(reset);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        String roundTrip = mCallStatistics.getReport();
+        if (reset) {
+            mCallStatistics.reset();
+        }
+        return "round trip:\n" + roundTrip + "\nexecution:\n" + execution;
+    }
+
+    /**
+     * Record every battery change on the remote side for soak tests. Arms
+     * keeps the latest 4096 changes.
+     * 
+     * @param enabled
+     *            true to start recording, false to stop
+     */
+    public void setBatteryRecordingEnabled(boolean enabled) {
+        try {
+            iArms.setBatteryRecordingEnabled(enabled);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * get recorded battery changes in a time window, e.g. of a test method
+     * 
+     * <pre>
+     * long start = System.currentTimeMillis();
+     * // run the test
+     * BatteryHistory history = getBatteryHistory(start, System.currentTimeMillis());
+     * print(history.getLevelDelta() + "% in " + history.getDuration() + "ms");
+     * </pre>
+     * 
+     * @param fromTime
+     *            System.currentTimeMillis() of the start, inclusive
+     * @param toTime
+     *            System.currentTimeMillis() of the end, inclusive
+     * @return the last sample before the window as the baseline, then the
+     *         samples in the window, null if failed
+     */
+    public BatteryHistory getBatteryHistory(long fromTime, long toTime) {
+        BatteryHistory ret = null;
+        try {
+            ret = BatteryHistory.parse(iArms.getBatteryHistory(fromTime, toTime));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
+    /**
+     * Take the power counters of the package as the baseline of a test case.
+     * It reads only the uid of the package, so it can be called in every
+     * setUp(), e.g.
+     * 
+     * <pre>
+     * setUp(): remote.beginPowerUsage(packageName);
+     * tearDown(): print(remote.endPowerUsage(packageName) + "mAh");
+     * </pre>
+     * 
+     * @param packageName
+     *            package under test
+     */
+    public void beginPowerUsage(String packageName) {
+        try {
+            iArms.beginPowerUsage(packageName);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Estimate the power used by the package since beginPowerUsage(), the
+     * details are printed by Arms. BatteryStats only counts when the device
+     * runs on battery, so it is 0 while charging by usb.
+     * 
+     * @param packageName
+     *            package under test
+     * @return power in mAh, -1 if failed
+     */
+    public double endPowerUsage(String packageName) {
+        double ret = -1;
+        try {
+            ret = iArms.endPowerUsage(packageName);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
     /**
      * only for CafeTestCase.tearDown() or testcase that doesn't inherit
      * CafeTestCase and should be called only one time
@@ -2154,6 +2624,7 @@ public class Armser {
      * factory reset with erase sd card
      */
     public void factoryResetWithEraseSD() {
+        mPropertyCache.clear();
         try {
             iArms.factoryResetWithEraseSD();
         } catch (Exception e) {
@@ -2304,11 +2775,16 @@ public class Armser {
      * @return the property
      */
     public String getSystemProperties(String key) {
-        String str = "";
+        String str = (String) mPropertyCache.get("getSystemProperties:" + key);
+        if (str != null) {
+            return str;
+        }
         try {
             str = iArms.getSystemProperties(key);
+            mPropertyCache.put("getSystemProperties:" + key, str, PROPERTY_TTL);
         } catch (Exception e) {
             e.printStackTrace();
+            str = "";
         }
         return str;
     }
@@ -2322,6 +2798,7 @@ public class Armser {
      *            e.g. cafe
      */
     public void setSystemProperties(String key, String val) {
+        mPropertyCache.invalidate("getSystemProperties:" + key);
         try {
             iArms.setSystemProperties(key, val);
         } catch (Exception e) {
@@ -2378,6 +2855,35 @@ public class Armser {
         return ret;
     }
 
+    /**
+     * Get properties of several views by one dump and one IPC. e.g.
+     * 
+     * <pre>
+     * ViewQueryResult result = armser.getViewPropertiesBatch(Arrays.asList(
+     *         new ViewQuery("mID", "id/ok", LocalLib.SEARCHMODE_COMPLETE_MATCHING, 1,
+     *                 new String[] { "mID" }),
+     *         new ViewQuery("mID", "id/title", LocalLib.SEARCHMODE_COMPLETE_MATCHING, 1,
+     *                 new String[] { "mText" })), true);
+     * </pre>
+     * 
+     * @param queries
+     *            views to be searched
+     * @param getNew
+     *            True means start a new dump. False means get properties from
+     *            last dump.
+     * @return properties of each query in the order of queries, and null for
+     *         a query whose view is not found
+     */
+    public ViewQueryResult getViewPropertiesBatch(List<ViewQuery> queries, boolean getNew) {
+        ViewQueryResult ret = null;
+        try {
+            ret = iArms.getViewPropertiesBatch(queries, getNew);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
     /**
      * get focused window name
      * 
@@ -2393,6 +2899,24 @@ public class Armser {
         return ret;
     }
 
+    /**
+     * Set how long a dump of the focused window can be reused by view queries
+     * such as clickView and checkView. The reused dump is dropped at once when
+     * the focused window changes or an input event is injected by Arms, but
+     * not when input comes from others such as monkey, adb or the app itself.
+     * 
+     * @param maxAge
+     *            max age in ms, 0 means always dump from view server, which
+     *            is the default
+     */
+    public void setDumpCacheMaxAge(long maxAge) {
+        try {
+            iArms.setDumpCacheMaxAge(maxAge);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * check the given processname alive or not
      * 
@@ -2670,6 +3194,85 @@ public class Armser {
         return ret;
     }
 
+    /**
+     * Start following logcat on the remote side. Filters are passed to
+     * logcat, and the latest 8192 lines are kept, so a test reads only the
+     * new lines by readLogTail() instead of dumping the whole log by
+     * getLog(). Lines logged before the start are not kept, e.g.
+     * 
+     * <pre>
+     * startLogTail(new String[] { &quot;MyTest:I&quot; });
+     * long seq = readLogTail(Long.MAX_VALUE, 0).getNextSeq();
+     * // do something
+     * long matched = waitForLogTail(&quot;login ok&quot;, seq, 10000);
+     * LogChunk chunk = readLogTail(seq, 500);
+     * </pre>
+     * 
+     * @param filterSpecs
+     *            series of <tag>[:priority] such as "MyTest:I", null for all
+     *            logs
+     */
+    public void startLogTail(String[] filterSpecs) {
+        try {
+            iArms.startLogTail(filterSpecs);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * stop the logcat started by startLogTail()
+     */
+    public void stopLogTail() {
+        try {
+            iArms.stopLogTail();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * read lines of the log tail by sequence number
+     * 
+     * @param fromSeq
+     *            sequence number of the first line wanted, Long.MAX_VALUE to
+     *            get the current position only
+     * @param maxLines
+     *            max lines returned, a chunk is also limited by size
+     * @return the lines and the sequence number of the next read, null if
+     *         failed
+     */
+    public LogChunk readLogTail(long fromSeq, int maxLines) {
+        LogChunk ret = null;
+        try {
+            ret = iArms.readLogTail(fromSeq, maxLines);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
+    /**
+     * block until a line matching regex appears in the log tail
+     * 
+     * @param regex
+     *            regular expression found in the line
+     * @param fromSeq
+     *            sequence number of the first line to check
+     * @param timeout
+     *            max time to wait in ms
+     * @return sequence number of the matched line, -1 if timeout
+     */
+    public long waitForLogTail(String regex, long fromSeq, long timeout) {
+        long ret = -1;
+        try {
+            ret = iArms.waitForLogTail(regex, fromSeq, timeout);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return ret;
+    }
+
     /**
      * clear (flush) the entire log, by calling "logcat -c"
      */
@@ -2770,9 +3373,14 @@ public class Armser {
      *         Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL
      */
     public int getScreenBrightnessMode() {
+        Integer cached = (Integer) mPropertyCache.get("getScreenBrightnessMode");
+        if (cached != null) {
+            return cached;
+        }
         int ret = 0;
         try {
             ret = iArms.getScreenBrightnessMode();
+            mPropertyCache.put("getScreenBrightnessMode", ret, PROPERTY_TTL);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -2785,6 +3393,8 @@ public class Armser {
      *            Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL
      */
     public void setScreenBrightnessMode(int mode) {
+        mPropertyCache.invalidate("getScreenBrightnessMode");
+        mPropertyCache.invalidate("getScreenBrightness");
         try {
             iArms.setScreenBrightnessMode(mode);
         } catch (Exception e) {
@@ -2842,6 +3452,8 @@ public class Armser {
     }
 
     public void setAccelerometerRotationEnabled(boolean enabled) {
+        mPropertyCache.invalidate("getDisplayX");
+        mPropertyCache.invalidate("getDisplayY");
         try {
             iArms.setAccelerometerRotationEnabled(enabled);
         } catch (Exception e) {
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.os.SystemClock;
+
+/**
+ * Client-side cache of device properties read by Armser.
+ *
+ * A property which can not change until reboot, such as the build version,
+ * is put with BOOT, and the whole cache is cleared when the service is
+ * disconnected. Other properties are put with a ttl, and are invalidated by
+ * the Armser methods changing them.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class PropertyCache {
+    /**
+     * ttl of a property which can not change until reboot
+     */
+    final static long                        BOOT     = Long.MAX_VALUE;
+
+    private ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<String, Entry>();
+
+    private static class Entry {
+        final Object value;
+        final long   expire;
+
+        Entry(Object value, long expire) {
+            this.value = value;
+            this.expire = expire;
+        }
+    }
+
+    /**
+     * @return the cached value, null if it is not cached or expired
+     */
+    Object get(String key) {
+        Entry entry = mEntries.get(key);
+        if (null == entry || SystemClock.uptimeMillis() >= entry.expire) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * @param ttl
+     *            time to live in ms, or BOOT
+     */
+    void put(String key, Object value, long ttl) {
+        if (null == value) {
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        mEntries.put(key, new Entry(value, ttl > BOOT - now ? BOOT : now + ttl));
+    }
+
+    void invalidate(String key) {
+        mEntries.remove(key);
+    }
+
+    void clear() {
+        mEntries.clear();
+    }
+}
@@ -16,12 +16,18 @@
 
 package com.baidu.cafe.remote;
 
+import java.lang.reflect.Field;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import com.baidu.cafe.utils.Strings;
 
 import android.app.Instrumentation;
 import android.content.Context;
+import android.os.Parcel;
+import android.os.RemoteException;
 
 /**
  * This is a interface-class.
@@ -37,6 +43,30 @@ public class ArmsBinder extends IRemoteArms.Stub {
     private ViewPropertyProvider mViewPropertyProvider = null;
     private UILib                mUILib                = null;
 
+    /**
+     * Runs the long operations of async calls one by one, so that the binder
+     * thread of a oneway call returns at once. They still overlap with sync
+     * calls, so the SystemLib state they share is guarded there, e.g. by
+     * mScreenCapLock and mInstallLock.
+     */
+    private ExecutorService      mAsyncExecutor        = Executors.newSingleThreadExecutor();
+
+    /**
+     * Runs waitforTopActivityAsync() apart from mAsyncExecutor, a wait of up
+     * to its timeout only polls, it must not hold back a screenCapAsync()
+     * issued after it.
+     */
+    private ExecutorService      mWaitExecutor         = Executors.newSingleThreadExecutor();
+
+    /**
+     * service-side execution time of each method, Armser records the round
+     * trip of the same calls
+     */
+    private CallStatistics       mCallStatistics       = new CallStatistics();
+    private volatile HashMap<Integer, String> mTransactionNames = null;
+
+    private final static String  TRANSACTION_PREFIX    = "TRANSACTION_";
+
     ArmsBinder(Context context) {
         mSystemLib = new SystemLib(context);
         mContext = context;
@@ -584,6 +614,188 @@ public class ArmsBinder extends IRemoteArms.Stub {
         mUILib.drag(fromX, toX, fromY, toY, stepCount);
     }
 
+    public String getMonkeyStatistics() {
+        return mUILib.getMonkeyStatistics();
+    }
+
+    public void performGesture(Gesture gesture) {
+        mUILib.performGesture(gesture);
+    }
+
+    public void installApkAsync(final String filename, final long timeout,
+            final IArmsCallback callback) {
+        mAsyncExecutor.execute(new AsyncCall(callback, filename) {
+
+            @Override
+            boolean call() {
+                return mSystemLib.installApkSync(filename, timeout);
+            }
+        });
+    }
+
+    public void waitforTopActivityAsync(final String className, final long timeout,
+            final IArmsCallback callback) {
+        mWaitExecutor.execute(new AsyncCall(callback, className) {
+
+            @Override
+            boolean call() {
+                return mSystemLib.waitforTopActivity(className, timeout);
+            }
+        });
+    }
+
+    public void screenCapAsync(final String prefix, final IArmsCallback callback) {
+        mAsyncExecutor.execute(new AsyncCall(callback, prefix) {
+
+            @Override
+            boolean call() {
+                return mSystemLib.screenCap(prefix);
+            }
+        });
+    }
+
+    public DeviceSnapshot getDeviceSnapshot(String[] fields) {
+        return mSystemLib.getDeviceSnapshot(fields);
+    }
+
+    public void setCallStatisticsEnabled(boolean enabled) {
+        mCallStatistics.setEnabled(enabled);
+    }
+
+    public String getCallStatistics(boolean reset) {
+        String report = mCallStatistics.getReport();
+        if (reset) {
+            mCallStatistics.reset();
+        }
+        return report;
+    }
+
+    public void setBatteryRecordingEnabled(boolean enabled) {
+        mSystemLib.setBatteryRecordingEnabled(enabled);
+    }
+
+    public byte[] getBatteryHistory(long fromTime, long toTime) {
+        return mSystemLib.getBatteryHistory(fromTime, toTime);
+    }
+
+    public void beginPowerUsage(String packageName) {
+        mSystemLib.beginPowerUsage(packageName);
+    }
+
+    public double endPowerUsage(String packageName) {
+        return mSystemLib.endPowerUsage(packageName);
+    }
+
+    public void startLogTail(String[] filterSpecs) {
+        mSystemLib.startLogTail(filterSpecs);
+    }
+
+    public void stopLogTail() {
+        mSystemLib.stopLogTail();
+    }
+
+    public LogChunk readLogTail(long fromSeq, int maxLines) {
+        return mSystemLib.readLogTail(fromSeq, maxLines);
+    }
+
+    public long waitForLogTail(String regex, long fromSeq, long timeout) {
+        return mSystemLib.waitForLogTail(regex, fromSeq, timeout);
+    }
+
+    public boolean screenCapBurst(String prefix, int count, long interval) {
+        return mSystemLib.screenCapBurst(prefix, count, interval);
+    }
+
+    public void screenCapBurstAsync(final String prefix, final int count, final long interval,
+            final IArmsCallback callback) {
+        mAsyncExecutor.execute(new AsyncCall(callback, prefix) {
+
+            @Override
+            boolean call() {
+                return mSystemLib.screenCapBurst(prefix, count, interval);
+            }
+        });
+    }
+
+    /**
+     * time the execution of every call when call statistics is enabled
+     */
+    @Override
+    public boolean onTransact(int code, Parcel data, Parcel reply, int flags)
+            throws RemoteException {
+        if (!mCallStatistics.isEnabled()) {
+            return super.onTransact(code, data, reply, flags);
+        }
+        long start = System.nanoTime();
+        try {
+            return super.onTransact(code, data, reply, flags);
+        } finally {
+            mCallStatistics.record(getTransactionName(code), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * map the transaction code to the method name by the TRANSACTION_ fields
+     * generated by aidl
+     */
+    private String getTransactionName(int code) {
+        if (null == mTransactionNames) {
+            HashMap<Integer, String> names = new HashMap<Integer, String>();
+            for (Field field : IRemoteArms.Stub.class.getDeclaredFields()) {
+                if (!field.getName().startsWith(TRANSACTION_PREFIX)) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                    names.put(field.getInt(null),
+                            field.getName().substring(TRANSACTION_PREFIX.length()));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            mTransactionNames = names;
+        }
+        String name = mTransactionNames.get(code);
+        return null == name ? "transaction" + code : name;
+    }
+
+    /**
+     * an async call whose callback is always called, the future of the
+     * caller would wait forever if an exception skipped it
+     */
+    private abstract class AsyncCall implements Runnable {
+        private IArmsCallback mCallback = null;
+        private String        mMessage  = null;
+
+        AsyncCall(IArmsCallback callback, String message) {
+            mCallback = callback;
+            mMessage = message;
+        }
+
+        abstract boolean call();
+
+        public void run() {
+            try {
+                onResult(mCallback, call(), mMessage);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                onResult(mCallback, false, e.toString());
+            }
+        }
+    }
+
+    private void onResult(IArmsCallback callback, boolean success, String message) {
+        if (null == callback) {
+            return;
+        }
+        try {
+            callback.onResult(success, message);
+        } catch (RemoteException e) {
+            // the caller has gone
+            e.printStackTrace();
+        }
+    }
+
     public void waitForAllDumpCompleted() {
         mViewPropertyProvider.waitForAllDumpCompleted();
     }
@@ -662,10 +874,18 @@ public class ArmsBinder extends IRemoteArms.Stub {
                 targetNumber, getKeys, getNew);
     }
 
+    public ViewQueryResult getViewPropertiesBatch(List<ViewQuery> queries, boolean getNew) {
+        return mViewPropertyProvider.getViewPropertiesBatch(queries, getNew);
+    }
+
     public String getFocusedWindow() {
         return mViewPropertyProvider.getFocusedWindow();
     }
 
+    public void setDumpCacheMaxAge(long maxAge) {
+        mViewPropertyProvider.setDumpCacheMaxAge(maxAge);
+    }
+
     public boolean checkProcessAlive(String processName) {
         return mViewPropertyProvider.checkProcessAlive(processName);
     }
@@ -27,24 +27,40 @@ import android.os.BatteryManager;
  * @date 2011-06-20
  */
 class BatteryState {
-    private String  mStatus;
-    private String  mHealth;
-    private boolean mPresent;
-    private int     mLevel;
-    private int     mScale;
-    private int     mIcon_small;
-    private String  mPlugged;
-    private int     mVoltage;
-    private int     mTemperature;
-    private String  mTechnology;
-
-    private Context mContext;
+    private String           mStatus;
+    private String           mHealth;
+    private boolean          mPresent;
+    private int              mLevel;
+    private int              mScale;
+    private int              mIcon_small;
+    private String           mPlugged;
+    private int              mVoltage;
+    private int              mTemperature;
+    private String           mTechnology;
+
+    private Context          mContext;
+
+    /**
+     * samples of about one day if battery changes every 20s
+     */
+    private final static int HISTORY_CAPACITY = 4096;
+
+    private BatteryHistory   mHistory         = new BatteryHistory(HISTORY_CAPACITY);
+    private boolean          mRecording       = false;
+    private int              mRegisterCount   = 0;
 
     public BatteryState(Context context) {
         mContext = context;
     }
 
-    public void init() {
+    /**
+     * register the receiver, it is kept registered until every init() is
+     * paired with a deinit()
+     */
+    public synchronized void init() {
+        if (mRegisterCount++ > 0) {
+            return;
+        }
         IntentFilter filter = new IntentFilter();
         filter.addAction(Intent.ACTION_BATTERY_CHANGED);
         mContext.registerReceiver(mBroadcastReceiver, filter);
@@ -55,10 +71,37 @@ class BatteryState {
         }
     }
 
-    public void deinit() {
+    public synchronized void deinit() {
+        if (0 == mRegisterCount || --mRegisterCount > 0) {
+            return;
+        }
         mContext.unregisterReceiver(mBroadcastReceiver);
     }
 
+    /**
+     * keep the receiver registered and add every ACTION_BATTERY_CHANGED to
+     * the history
+     */
+    public synchronized void setRecording(boolean recording) {
+        if (recording == mRecording) {
+            return;
+        }
+        mRecording = recording;
+        if (recording) {
+            init();
+        } else {
+            deinit();
+        }
+    }
+
+    /**
+     * @return samples between fromTime and toTime in the format of
+     *         BatteryHistory.export()
+     */
+    public byte[] getHistory(long fromTime, long toTime) {
+        return mHistory.export(fromTime, toTime);
+    }
+
     public String getStatus() {
         return mStatus;
     }
@@ -126,6 +169,12 @@ class BatteryState {
                                                                      "temperature", 0);
                                                              mTechnology = intent
                                                                      .getStringExtra("technology");
+                                                             if (mRecording) {
+                                                                 mHistory.add(
+                                                                         System.currentTimeMillis(),
+                                                                         mLevel, mVoltage,
+                                                                         mTemperature, plugged);
+                                                             }
 
                                                              switch (status) {
                                                              case BatteryManager.BATTERY_STATUS_UNKNOWN:
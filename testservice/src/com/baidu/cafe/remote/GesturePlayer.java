@@ -0,0 +1,301 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import android.app.Instrumentation;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.InputDevice;
+import android.view.MotionEvent;
+import android.view.MotionEvent.PointerCoords;
+
+/**
+ * Plays a multi-pointer Gesture by instrumentation.
+ *
+ * A gesture is first compiled into frames, each frame is one MotionEvent
+ * with the positions of all pointers which are down. Frames are kept in flat
+ * arrays and the pointer arrays given to MotionEvent.obtain() are reused, so
+ * nothing is allocated between two frames and the cadence of the gesture is
+ * not disturbed by gc. Each event is stamped with its planned time.
+ *
+ * Events of several pointers need API 9, a device below it plays gestures of
+ * one pointer only.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class GesturePlayer {
+    private final static int MAX_POINTERS        = 10;
+    // API Level: 9. Android 2.3
+    private final static int API_MULTI_POINTER   = 9;
+
+    private Instrumentation  mInstrumentation    = null;
+    private int[]            mPointerIds         = new int[MAX_POINTERS];
+    private PointerCoords[]  mPointerCoords      = new PointerCoords[MAX_POINTERS];
+
+    // frames of the compiled gesture
+    private int              mFrameCount         = 0;
+    private long[]           mFrameTimes         = new long[64];
+    private int[]            mFrameActions       = new int[64];
+    private int[]            mFramePointerCounts = new int[64];
+    private int[]            mFrameOffsets       = new int[64];
+
+    // pointers of all frames, frame i starts at mFrameOffsets[i]
+    private int              mPointerSize        = 0;
+    private int[]            mIds                = new int[128];
+    private float[]          mXs                 = new float[128];
+    private float[]          mYs                 = new float[128];
+
+    GesturePlayer(Instrumentation instrumentation) {
+        mInstrumentation = instrumentation;
+        if (Build.VERSION.SDK_INT < API_MULTI_POINTER) {
+            // PointerCoords is missing
+            return;
+        }
+        for (int i = 0; i < MAX_POINTERS; i++) {
+            mPointerCoords[i] = new PointerCoords();
+            mPointerCoords[i].pressure = 1;
+            mPointerCoords[i].size = 1;
+        }
+    }
+
+    /**
+     * inject all events of the gesture, it returns after the last one
+     *
+     * @param gesture
+     *            the gesture to be played
+     */
+    synchronized void play(Gesture gesture) {
+        if (!compile(gesture)) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < API_MULTI_POINTER && gesture.getPointerCount() > 1) {
+            Log.print("GesturePlayer: more than one pointer needs API " + API_MULTI_POINTER);
+            return;
+        }
+
+        long downTime = SystemClock.uptimeMillis();
+        long maxDelay = 0;
+        int sentCount = 0;
+        try {
+            for (int i = 0; i < mFrameCount; i++) {
+                long eventTime = downTime + mFrameTimes[i];
+                long delay = eventTime - SystemClock.uptimeMillis();
+                if (delay > 0) {
+                    SystemClock.sleep(delay);
+                } else if (-delay > maxDelay) {
+                    maxDelay = -delay;
+                }
+
+                send(i, downTime, eventTime, mFrameActions[i]);
+                sentCount++;
+            }
+        } catch (SecurityException e) {
+            // injecting into other apps needs platform signature
+            e.printStackTrace();
+            Log.print("GesturePlayer: no permission to inject events");
+        } finally {
+            if (sentCount > 0 && sentCount < mFrameCount) {
+                cancel(sentCount - 1, downTime);
+            }
+        }
+        Log.print("GesturePlayer: " + sentCount + " of " + mFrameCount + " frames, max delay "
+                + maxDelay + "ms");
+    }
+
+    /**
+     * Cancel a gesture which is stopped halfway, or its pointers stay down in
+     * the input pipeline. It fails too if the window still rejects events.
+     *
+     * @param frame
+     *            the last frame sent, the pointers of it are canceled
+     */
+    private void cancel(int frame, long downTime) {
+        try {
+            send(frame, downTime, SystemClock.uptimeMillis(), MotionEvent.ACTION_CANCEL);
+        } catch (SecurityException e) {
+            Log.print("GesturePlayer: can not cancel the gesture, " + e.getMessage());
+        }
+    }
+
+    /**
+     * inject the pointers of a frame with the given action
+     */
+    @SuppressWarnings("deprecation")
+    private void send(int frame, long downTime, long eventTime, int action) {
+        int pointerCount = mFramePointerCounts[frame];
+        int offset = mFrameOffsets[frame];
+
+        // obtain() takes an event from the pool of MotionEvent, and recycle()
+        // puts it back for the next frame
+        MotionEvent event = null;
+        if (Build.VERSION.SDK_INT < API_MULTI_POINTER) {
+            event = MotionEvent.obtain(downTime, eventTime, action, mXs[offset], mYs[offset], 0);
+        } else {
+            for (int j = 0; j < pointerCount; j++) {
+                mPointerIds[j] = mIds[offset + j];
+                mPointerCoords[j].x = mXs[offset + j];
+                mPointerCoords[j].y = mYs[offset + j];
+            }
+            event = MotionEvent.obtain(downTime, eventTime, action, pointerCount, mPointerIds,
+                    mPointerCoords, 0, 1, 1, 0, 0, InputDevice.SOURCE_TOUCHSCREEN, 0);
+        }
+        try {
+            mInstrumentation.sendPointerSync(event);
+        } finally {
+            event.recycle();
+        }
+    }
+
+    /**
+     * Turn events of the gesture into frames. A down or up of a pointer is
+     * a frame on its own. Moves of the same time are merged into one frame
+     * as long as each pointer moves once in it, a second move of a pointer
+     * starts a new frame so that no position is lost.
+     *
+     * @return false if the gesture can not be played
+     */
+    private boolean compile(Gesture gesture) {
+        mFrameCount = 0;
+        mPointerSize = 0;
+        if (null == gesture || 0 == gesture.size()) {
+            return false;
+        }
+
+        long firstTime = gesture.getTime(0);
+        int pointerCount = 0;
+        int[] ids = new int[MAX_POINTERS];
+        float[] xs = new float[MAX_POINTERS];
+        float[] ys = new float[MAX_POINTERS];
+        // pointers moved in the frame being built
+        boolean[] moved = new boolean[MAX_POINTERS];
+        for (int i = 0; i < gesture.size(); i++) {
+            int pointerId = gesture.getPointerId(i);
+            int action = gesture.getAction(i);
+            int pointerIndex = indexOf(ids, pointerCount, pointerId);
+            if (Gesture.ACTION_DOWN == action && pointerIndex < 0) {
+                if (MAX_POINTERS == pointerCount) {
+                    Log.print("GesturePlayer: more than " + MAX_POINTERS + " pointers");
+                    return false;
+                }
+                pointerIndex = pointerCount++;
+                ids[pointerIndex] = pointerId;
+            } else if (pointerIndex < 0) {
+                Log.print("GesturePlayer: pointer " + pointerId + " is not down");
+                continue;
+            }
+            xs[pointerIndex] = gesture.getX(i);
+            ys[pointerIndex] = gesture.getY(i);
+
+            if (Gesture.ACTION_MOVE == action) {
+                moved[pointerIndex] = true;
+                if (canMerge(gesture, i + 1, ids, pointerCount, moved)) {
+                    continue;
+                }
+            }
+
+            int motionAction = MotionEvent.ACTION_MOVE;
+            if (Gesture.ACTION_DOWN == action) {
+                motionAction = 1 == pointerCount ? MotionEvent.ACTION_DOWN
+                        : MotionEvent.ACTION_POINTER_DOWN
+                                | (pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            } else if (Gesture.ACTION_UP == action) {
+                motionAction = 1 == pointerCount ? MotionEvent.ACTION_UP
+                        : MotionEvent.ACTION_POINTER_UP
+                                | (pointerIndex << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            }
+            addFrame(gesture.getTime(i) - firstTime, motionAction, pointerCount, ids, xs, ys);
+            for (int j = 0; j < MAX_POINTERS; j++) {
+                moved[j] = false;
+            }
+
+            if (Gesture.ACTION_UP == action) {
+                pointerCount--;
+                System.arraycopy(ids, pointerIndex + 1, ids, pointerIndex, pointerCount
+                        - pointerIndex);
+                System.arraycopy(xs, pointerIndex + 1, xs, pointerIndex, pointerCount
+                        - pointerIndex);
+                System.arraycopy(ys, pointerIndex + 1, ys, pointerIndex, pointerCount
+                        - pointerIndex);
+            }
+        }
+        return mFrameCount > 0;
+    }
+
+    /**
+     * @return true if event next is a move of the same time as the frame
+     *         being built, by a pointer which is down and not moved in it yet
+     */
+    private static boolean canMerge(Gesture gesture, int next, int[] ids, int pointerCount,
+            boolean[] moved) {
+        if (next >= gesture.size() || gesture.getAction(next) != Gesture.ACTION_MOVE
+                || gesture.getTime(next) != gesture.getTime(next - 1)) {
+            return false;
+        }
+        int pointerIndex = indexOf(ids, pointerCount, gesture.getPointerId(next));
+        return pointerIndex >= 0 && !moved[pointerIndex];
+    }
+
+    private void addFrame(long time, int action, int pointerCount, int[] ids, float[] xs,
+            float[] ys) {
+        if (mFrameCount == mFrameTimes.length) {
+            int capacity = mFrameCount * 2;
+            long[] frameTimes = new long[capacity];
+            System.arraycopy(mFrameTimes, 0, frameTimes, 0, mFrameCount);
+            mFrameTimes = frameTimes;
+            mFrameActions = grow(mFrameActions, capacity);
+            mFramePointerCounts = grow(mFramePointerCounts, capacity);
+            mFrameOffsets = grow(mFrameOffsets, capacity);
+        }
+        if (mPointerSize + pointerCount > mIds.length) {
+            int capacity = Math.max(mIds.length * 2, mPointerSize + pointerCount);
+            mIds = grow(mIds, capacity);
+            float[] newXs = new float[capacity];
+            float[] newYs = new float[capacity];
+            System.arraycopy(mXs, 0, newXs, 0, mPointerSize);
+            System.arraycopy(mYs, 0, newYs, 0, mPointerSize);
+            mXs = newXs;
+            mYs = newYs;
+        }
+
+        mFrameTimes[mFrameCount] = time;
+        mFrameActions[mFrameCount] = action;
+        mFramePointerCounts[mFrameCount] = pointerCount;
+        mFrameOffsets[mFrameCount] = mPointerSize;
+        mFrameCount++;
+        System.arraycopy(ids, 0, mIds, mPointerSize, pointerCount);
+        System.arraycopy(xs, 0, mXs, mPointerSize, pointerCount);
+        System.arraycopy(ys, 0, mYs, mPointerSize, pointerCount);
+        mPointerSize += pointerCount;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    private static int indexOf(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
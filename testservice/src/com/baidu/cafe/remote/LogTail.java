@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Follows the output of one long-running logcat process.
+ *
+ * Tag and level filters are given to logcat, so filtered lines never reach
+ * Arms. The latest lines are kept in a ring buffer, and every line gets a
+ * sequence number counting from 0, so a client reads only the lines after
+ * its last read instead of dumping the whole log again.
+ *
+ * logcat first replays the lines already in the log buffer of the device.
+ * They are dropped by the "-v time" timestamp of each line, so the first
+ * sequence numbers belong to lines logged after start(), and a restart with
+ * the same filters does not add the kept lines again. The timestamp has no
+ * year, a start just before new year may drop lines until the clock passes
+ * the start time of day again.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class LogTail {
+    /**
+     * max chars of a chunk, it keeps a reply far below the binder
+     * transaction limit
+     */
+    private final static int MAX_CHUNK_CHARS = 128 * 1024;
+    /**
+     * length of "MM-dd HH:mm:ss.SSS" at the head of a line of "-v time"
+     */
+    private final static int STAMP_LENGTH    = 18;
+
+    private String[]         mFilterSpecs    = null;
+    private String[]         mLines          = null;
+    private long             mNextSeq        = 0;
+    /**
+     * lines stamped before it are the replayed backlog of logcat
+     */
+    private String           mSince          = null;
+    private Process          mProcess        = null;
+    private Thread           mThread         = null;
+
+    /**
+     * @param capacity
+     *            max lines kept, older lines are dropped
+     */
+    LogTail(int capacity) {
+        mLines = new String[capacity];
+    }
+
+    /**
+     * Start logcat if it is not running with the same filters. Lines
+     * already kept are dropped when the filters change.
+     *
+     * @param filterSpecs
+     *            series of <tag>[:priority] such as "MyTest:I", null or empty
+     *            for all logs
+     */
+    synchronized void start(String[] filterSpecs) {
+        if (mThread != null && Arrays.equals(mFilterSpecs, filterSpecs)) {
+            return;
+        }
+        stop();
+        if (null == mSince || !Arrays.equals(mFilterSpecs, filterSpecs)) {
+            Arrays.fill(mLines, null);
+            mNextSeq = 0;
+            mSince = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US).format(new Date());
+        } else if (mNextSeq > 0) {
+            // the same filters, go on after the newest line kept
+            String stamp = getStamp(mLines[(int) ((mNextSeq - 1) % mLines.length)]);
+            if (stamp != null) {
+                mSince = stamp;
+            }
+        }
+        mFilterSpecs = filterSpecs;
+
+        ArrayList<String> command = new ArrayList<String>();
+        command.add("logcat");
+        command.add("-v");
+        command.add("time");
+        if (filterSpecs != null && filterSpecs.length > 0) {
+            command.add("-s");
+            command.addAll(Arrays.asList(filterSpecs));
+        }
+        try {
+            mProcess = Runtime.getRuntime().exec(command.toArray(new String[command.size()]));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        final Process process = mProcess;
+        final String since = mSince;
+        mThread = new Thread(new Runnable() {
+
+            public void run() {
+                follow(process, since);
+            }
+        }, "LogTail");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    synchronized void stop() {
+        if (mProcess != null) {
+            mProcess.destroy();
+        }
+        mProcess = null;
+        mThread = null;
+        notifyAll();
+    }
+
+    /**
+     * @param fromSeq
+     *            sequence number of the first line wanted
+     * @param maxLines
+     *            max lines returned
+     * @return lines from fromSeq, or from the oldest line kept if fromSeq has
+     *         been dropped
+     */
+    synchronized LogChunk read(long fromSeq, int maxLines) {
+        long seq = Math.min(Math.max(fromSeq, getOldestSeq()), mNextSeq);
+        int count = (int) Math.min(Math.max(maxLines, 0), mNextSeq - seq);
+        int chars = 0;
+        ArrayList<String> lines = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            String line = mLines[(int) ((seq + i) % mLines.length)];
+            chars += line.length();
+            if (chars > MAX_CHUNK_CHARS && i > 0) {
+                break;
+            }
+            lines.add(line);
+        }
+        return new LogChunk(seq, lines.toArray(new String[lines.size()]));
+    }
+
+    /**
+     * block until a line matching pattern is logged
+     *
+     * @param pattern
+     *            regular expression found in the line
+     * @param fromSeq
+     *            sequence number of the first line to check
+     * @param timeout
+     *            max time to wait in ms
+     * @return sequence number of the matched line, -1 if timeout
+     */
+    synchronized long waitFor(Pattern pattern, long fromSeq, long timeout) {
+        long endTime = System.currentTimeMillis() + timeout;
+        long seq = fromSeq;
+        while (true) {
+            for (seq = Math.max(seq, getOldestSeq()); seq < mNextSeq; seq++) {
+                if (pattern.matcher(mLines[(int) (seq % mLines.length)]).find()) {
+                    return seq;
+                }
+            }
+            long delay = endTime - System.currentTimeMillis();
+            if (delay <= 0 || null == mThread) {
+                return -1;
+            }
+            try {
+                wait(delay);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                return -1;
+            }
+        }
+    }
+
+    private long getOldestSeq() {
+        return Math.max(0, mNextSeq - mLines.length);
+    }
+
+    /**
+     * @return "MM-dd HH:mm:ss.SSS" of the line, null if it is not stamped
+     *         such as "--------- beginning of /dev/log/main"
+     */
+    private static String getStamp(String line) {
+        if (null == line || line.length() < STAMP_LENGTH || line.charAt(2) != '-'
+                || line.charAt(5) != ' ') {
+            return null;
+        }
+        return line.substring(0, STAMP_LENGTH);
+    }
+
+    /**
+     * @return true if the line is logged before since, or is a line of the
+     *         same time which has been kept
+     */
+    private boolean isBacklog(String line, String since) {
+        String stamp = getStamp(line);
+        if (null == stamp) {
+            return true;
+        }
+        int order = stamp.compareTo(since);
+        if (order != 0) {
+            return order < 0;
+        }
+        for (long seq = mNextSeq - 1; seq >= getOldestSeq(); seq--) {
+            String kept = mLines[(int) (seq % mLines.length)];
+            if (!stamp.equals(getStamp(kept))) {
+                break;
+            }
+            if (line.equals(kept)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void follow(Process process, String since) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                process.getInputStream()));
+        boolean isBacklog = true;
+        try {
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                synchronized (this) {
+                    if (process != mProcess) {
+                        // stopped or restarted
+                        break;
+                    }
+                    if (isBacklog) {
+                        // the lines are in time order, so the backlog ends at
+                        // the first line which is not in it
+                        if (isBacklog(line, since)) {
+                            continue;
+                        }
+                        isBacklog = false;
+                    }
+                    mLines[(int) (mNextSeq % mLines.length)] = line;
+                    mNextSeq++;
+                    notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            // logcat is destroyed by stop()
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (this) {
+                if (process == mProcess) {
+                    mProcess = null;
+                    mThread = null;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -23,9 +23,26 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /**
- * One MonkeyNetwork object can only send one monkey event!
+ * A long-lived connection to monkey server. Commands are written at once and
+ * pipelined, their replies are read by sync(), so a gesture of many steps
+ * costs one round trip instead of one connection per step.
+ * 
+ * Monkey server replies "OK" or "ERROR" for every command in order. Commands
+ * are never sent twice, since monkey may have injected some of them before a
+ * broken connection is found. A connection which has been idle is probed
+ * before reuse instead, and a failure is reported by sync() for the caller
+ * to retry.
+ * 
+ * Monkey server serves one client at a time, so the connection is closed
+ * after IDLE_CLOSE_TIME without commands and other clients can connect.
  * 
  * @author chengzhenyu@baidu.com
  * @date 2012-3-30
@@ -33,17 +50,39 @@ import java.net.Socket;
  * @todo
  */
 public class MonkeyNetwork {
-    public final static String  DOWN             = "down";
-    public final static String  MOVE             = "move";
-    public final static String  UP               = "up";
-
-    private final static String MONKEY_SERVER_IP = "127.0.0.1";
-    private final static int    MONKEY_PORT      = 4938;
-    private final static int    EVENT_TIMEOUT    = 10 * 1000;
-    private BufferedReader      mIn              = null;
-    private BufferedWriter      mOut             = null;
-    private Socket              mSocket          = null;
-    private boolean             mIsDone          = false;
+    public final static String            DOWN             = "down";
+    public final static String            MOVE             = "move";
+    public final static String            UP               = "up";
+
+    private final static String           MONKEY_SERVER_IP = "127.0.0.1";
+    private final static int              MONKEY_PORT      = 4938;
+    private final static int              EVENT_TIMEOUT    = 10 * 1000;
+    private final static int              MAX_PIPELINE     = 64;
+    private final static long             PROBE_IDLE_TIME  = 1000;
+    private final static int              PROBE_TIMEOUT    = 1;
+    private final static long             IDLE_CLOSE_TIME  = 5 * 1000;
+    private BufferedReader                mIn              = null;
+    private BufferedWriter                mOut             = null;
+    private Socket                        mSocket          = null;
+    private long                          mIdleSince       = 0;
+    private boolean                       mHasFailed       = false;
+    private Timer                         mIdleTimer       = null;
+
+    /**
+     * commands which have been written but not replied, and their flush time
+     */
+    private ArrayList<String>             mPendingCommands = new ArrayList<String>();
+    private ArrayList<Long>               mPendingTimes    = new ArrayList<Long>();
+    /**
+     * the first pending commands which have been flushed, the rest are still
+     * in the buffer of mOut and have no time yet
+     */
+    private int                           mFlushedCount    = 0;
+
+    /**
+     * {count, failure count, total latency in ns} of each type of command
+     */
+    private LinkedHashMap<String, long[]> mStatistics      = new LinkedHashMap<String, long[]>();
 
     public MonkeyNetwork() {
     }
@@ -84,66 +123,235 @@ public class MonkeyNetwork {
         sendCommand(command);
     }
 
-    public void done() {
-        sendCommand("done");
+    /**
+     * End the session. Monkey server closes the connection on "done" without
+     * a reply, so it is not a pending command.
+     */
+    public synchronized void done() {
+        readReplies();
+        if (mSocket != null) {
+            try {
+                mOut.write("done");
+                mOut.newLine();
+                mOut.flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        close();
     }
 
-    private void sendCommand(final String command) {
-        new Thread(new Runnable() {
-            public void run() {
-                mSocket = new Socket();
-                try {
-                    mSocket.connect(new InetSocketAddress(MONKEY_SERVER_IP, MONKEY_PORT));
-                    mOut = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
-                    mIn = new BufferedReader(new InputStreamReader(mSocket.getInputStream(),
-                            "utf-8"));
-                    if (mOut == null || mIn == null) {
-                        Log.print("ERROR! mOut or mIn is null.");
-                        return;
-                    }
-                    mOut.write(command);
-                    mOut.newLine();
-                    mOut.flush();
-
-                    while (true) {
-                        String line;
-                        if ((line = mIn.readLine()) == null || "OK".equalsIgnoreCase(line)) {
-                            break;
-                        }
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    if (mSocket != null) {
-                        try {
-                            mSocket.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
-                    mIsDone = true;
-                }
+    /**
+     * Wait until all of the pipelined commands have been replied.
+     * 
+     * @return false if any command failed since last sync()
+     */
+    public synchronized boolean sync() {
+        readReplies();
+        boolean succeeded = !mHasFailed;
+        mHasFailed = false;
+        return succeeded;
+    }
+
+    /**
+     * @return count, failure count and average latency of each type of
+     *         command, such as "touch[20, 0, 1.2ms] key[2, 0, 3.5ms]". The
+     *         latency is from the flush of a command to its reply, the time
+     *         it waits in the buffer for a batch is not counted.
+     */
+    public synchronized String getStatistics() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, long[]> entry : mStatistics.entrySet()) {
+            long[] statistics = entry.getValue();
+            if (builder.length() > 0) {
+                builder.append(" ");
             }
-        },"sendCommandToMonkeyServer").start();
-        waitForDone();
+            builder.append(String.format("%s[%s, %s, %sms]", entry.getKey(), statistics[0],
+                    statistics[1], statistics[0] == 0 ? 0 : statistics[2] / statistics[0]
+                            / 1000000f));
+        }
+        return builder.toString();
     }
 
-    private void waitForDone() {
-        long timeout = System.currentTimeMillis() + EVENT_TIMEOUT;
-        while (true) {
-            try {
-                if (mIsDone) {
-                    break;
+    /**
+     * read the replies of all of the pending commands
+     */
+    private void readReplies() {
+        try {
+            if (!mPendingCommands.isEmpty()) {
+                flush();
+            }
+            while (!mPendingCommands.isEmpty()) {
+                String line = mIn.readLine();
+                if (null == line) {
+                    throw new IOException("monkey server closed the connection");
+                }
+                boolean isOk = "OK".equalsIgnoreCase(line);
+                if (!isOk) {
+                    Log.print("monkey [" + mPendingCommands.get(0) + "] failed: " + line);
                 }
-                if (System.currentTimeMillis() > timeout) {
-                    Log.print("waitForDone timeout !");
-                    break;
+                onReplied(isOk);
+            }
+            mIdleSince = System.currentTimeMillis();
+        } catch (IOException e) {
+            e.printStackTrace();
+            failAll();
+        }
+    }
+
+    /**
+     * write a command without waiting for its reply
+     */
+    private synchronized void sendCommand(final String command) {
+        try {
+            if (mSocket != null && mPendingCommands.isEmpty()
+                    && System.currentTimeMillis() - mIdleSince > PROBE_IDLE_TIME && !isAlive()) {
+                Log.print("monkey connection is broken, reconnect to monkey server");
+                close();
+            }
+            if (null == mSocket) {
+                connect();
+            }
+            write(command);
+            if (mPendingCommands.size() >= MAX_PIPELINE) {
+                // read replies before monkey server blocks on a full socket buffer
+                readReplies();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            // the command has not been written
+            mPendingCommands.add(command);
+            mPendingTimes.add(0L);
+            failAll();
+        }
+    }
+
+    /**
+     * count all of the pending commands as failed and drop the connection
+     */
+    private void failAll() {
+        while (!mPendingCommands.isEmpty()) {
+            onReplied(false);
+        }
+        close();
+    }
+
+    private void connect() throws IOException {
+        mSocket = new Socket();
+        mSocket.connect(new InetSocketAddress(MONKEY_SERVER_IP, MONKEY_PORT), EVENT_TIMEOUT);
+        mSocket.setSoTimeout(EVENT_TIMEOUT);
+        mOut = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
+        mIn = new BufferedReader(new InputStreamReader(mSocket.getInputStream(), "utf-8"));
+        mIdleSince = System.currentTimeMillis();
+        if (null == mIdleTimer) {
+            mIdleTimer = new Timer("MonkeyIdleClose", true);
+            mIdleTimer.schedule(new TimerTask() {
+
+                @Override
+                public void run() {
+                    closeIfIdle();
                 }
-                Thread.sleep(50);
-            } catch (InterruptedException e) {
+            }, IDLE_CLOSE_TIME, IDLE_CLOSE_TIME / 2);
+        }
+    }
+
+    /**
+     * release monkey server for other clients if no command is pending
+     */
+    private synchronized void closeIfIdle() {
+        if (mSocket != null && mPendingCommands.isEmpty()
+                && System.currentTimeMillis() - mIdleSince > IDLE_CLOSE_TIME) {
+            close();
+        }
+    }
+
+    /**
+     * Check an idle connection before writing to it. Every reply has been
+     * read, so a connection closed by monkey server is found before any
+     * command is lost in it.
+     * 
+     * @return false if the connection is closed or broken
+     */
+    private boolean isAlive() {
+        try {
+            mSocket.setSoTimeout(PROBE_TIMEOUT);
+            // end of stream, or data which no command asked for
+            mSocket.getInputStream().read();
+            return false;
+        } catch (SocketTimeoutException e) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            try {
+                mSocket.setSoTimeout(EVENT_TIMEOUT);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Write a command into the buffer. The buffer is flushed by
+     * readReplies(), MAX_PIPELINE commands never fill it before that.
+     */
+    private void write(String command) throws IOException {
+        mOut.write(command);
+        mOut.newLine();
+        mPendingCommands.add(command);
+        mPendingTimes.add(0L);
+    }
+
+    /**
+     * send the buffered commands and stamp their time
+     */
+    private void flush() throws IOException {
+        mOut.flush();
+        long now = System.nanoTime();
+        for (int i = mFlushedCount; i < mPendingTimes.size(); i++) {
+            mPendingTimes.set(i, now);
+        }
+        mFlushedCount = mPendingTimes.size();
+    }
+
+    /**
+     * count the reply of the oldest pending command
+     */
+    private void onReplied(boolean isOk) {
+        String command = mPendingCommands.remove(0);
+        long flushTime = mPendingTimes.remove(0);
+        // a command failed before it was flushed has no latency
+        long latency = 0;
+        if (mFlushedCount > 0) {
+            mFlushedCount--;
+            latency = System.nanoTime() - flushTime;
+        }
+        int end = command.indexOf(' ');
+        String type = end == -1 ? command : command.substring(0, end);
+        long[] statistics = mStatistics.get(type);
+        if (null == statistics) {
+            statistics = new long[3];
+            mStatistics.put(type, statistics);
+        }
+        statistics[0]++;
+        if (!isOk) {
+            statistics[1]++;
+            mHasFailed = true;
+        }
+        statistics[2] += latency;
+    }
+
+    private void close() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (IOException e) {
                 e.printStackTrace();
             }
         }
+        mSocket = null;
+        mIn = null;
+        mOut = null;
     }
 
     // Start monkey requires android.permission.SET_ACTIVITY_WATCHER which is owned by shell not app_xx
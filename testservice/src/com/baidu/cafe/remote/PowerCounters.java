@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.Map;
+
+import android.hardware.SensorManager;
+import android.os.BatteryStats;
+import android.os.BatteryStats.Uid;
+
+import com.android.internal.os.PowerProfile;
+
+/**
+ * Cumulative power counters of one uid read from BatteryStats.
+ *
+ * A baseline is read when a test begins and the counters are read again
+ * when it ends, then only the difference is turned into power in the same
+ * way as SystemLib.processAppBatteryUsage(). Only the uid under test is
+ * read, the other uids of the stats are not walked.
+ *
+ * The counters restart from 0 when the stats are reset, e.g. when the device
+ * is plugged or unplugged, so a baseline older than the reset is dropped and
+ * no difference is ever negative.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class PowerCounters {
+    final static int    CPU              = 0;
+    final static int    WAKELOCK         = 1;
+    final static int    DATA             = 2;
+    final static int    WIFI             = 3;
+    final static int    SENSOR           = 4;
+    final static int    POWER_TYPES      = 5;
+
+    // time at each cpu speed step summed over all processes
+    private long[]      mSpeedStepTimes  = null;
+    private long        mCpuTime         = 0;
+    private long        mWakelockTime    = 0;
+    private long        mGpsTime         = 0;
+    // sensor time multiplied by the power of each sensor, in mA*ms
+    private double      mSensorPower     = 0;
+    private long        mTcpBytes        = 0;
+    private long        mWifiRunningTime = 0;
+
+    /**
+     * @param u
+     *            stats of the uid
+     * @param uSecTime
+     *            battery realtime in us
+     * @param which
+     *            BatteryStats.STATS_XXX
+     */
+    static PowerCounters read(Uid u, long uSecTime, int which, PowerProfile powerProfile,
+            SensorManager sensorManager) {
+        PowerCounters counters = new PowerCounters();
+        int speedSteps = powerProfile.getNumSpeedSteps();
+        counters.mSpeedStepTimes = new long[speedSteps];
+        if (null == u) {
+            return counters;
+        }
+
+        for (Map.Entry<String, ? extends Uid.Proc> ent : u.getProcessStats().entrySet()) {
+            Uid.Proc ps = ent.getValue();
+            counters.mCpuTime += (ps.getUserTime(which) + ps.getSystemTime(which)) * 10;
+            for (int step = 0; step < speedSteps; step++) {
+                counters.mSpeedStepTimes[step] += ps.getTimeAtCpuSpeedStep(step, which);
+            }
+        }
+
+        for (Uid.Wakelock wakelock : u.getWakelockStats().values()) {
+            BatteryStats.Timer timer = wakelock.getWakeTime(BatteryStats.WAKE_TYPE_PARTIAL);
+            if (timer != null) {
+                counters.mWakelockTime += timer.getTotalTimeLocked(uSecTime, which) / 1000;
+            }
+        }
+
+        for (Uid.Sensor sensor : u.getSensorStats().values()) {
+            long sensorTime = sensor.getSensorTime().getTotalTimeLocked(uSecTime, which) / 1000;
+            double multiplier = 0;
+            if (Uid.Sensor.GPS == sensor.getHandle()) {
+                multiplier = powerProfile.getAveragePower(PowerProfile.POWER_GPS_ON);
+                counters.mGpsTime += sensorTime;
+            } else {
+                android.hardware.Sensor sensorData = sensorManager.getDefaultSensor(sensor
+                        .getHandle());
+                if (sensorData != null) {
+                    multiplier = sensorData.getPower();
+                }
+            }
+            counters.mSensorPower += multiplier * sensorTime;
+        }
+
+        counters.mTcpBytes = u.getTcpBytesReceived(which) + u.getTcpBytesSent(which);
+        counters.mWifiRunningTime = u.getWifiRunningTime(uSecTime, which) / 1000;
+        return counters;
+    }
+
+    /**
+     * @return true if any counter is less than in baseline, which means the
+     *         stats have been reset since baseline was read
+     */
+    boolean isResetSince(PowerCounters baseline) {
+        if (mCpuTime < baseline.mCpuTime || mWakelockTime < baseline.mWakelockTime
+                || mGpsTime < baseline.mGpsTime || mSensorPower < baseline.mSensorPower
+                || mTcpBytes < baseline.mTcpBytes || mWifiRunningTime < baseline.mWifiRunningTime
+                || mSpeedStepTimes.length != baseline.mSpeedStepTimes.length) {
+            return true;
+        }
+        for (int step = 0; step < mSpeedStepTimes.length; step++) {
+            if (mSpeedStepTimes[step] < baseline.mSpeedStepTimes[step]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param baseline
+     *            counters read when the test began
+     * @param averageCostPerByte
+     *            see SystemLib.getAverageDataCost()
+     * @return power of each type since baseline in mAh, indexed by CPU,
+     *         WAKELOCK, DATA, WIFI and SENSOR, or since the reset of the
+     *         stats if they have been reset after baseline
+     */
+    double[] getPowerSince(PowerCounters baseline, PowerProfile powerProfile,
+            double averageCostPerByte) {
+        baseline = getBaseline(baseline);
+        double[] power = new double[POWER_TYPES];
+
+        long totalTimeAtSpeeds = 0;
+        for (int step = 0; step < mSpeedStepTimes.length; step++) {
+            totalTimeAtSpeeds += mSpeedStepTimes[step] - baseline.mSpeedStepTimes[step];
+        }
+        if (0 == totalTimeAtSpeeds) {
+            totalTimeAtSpeeds = 1;
+        }
+        long cpuTime = mCpuTime - baseline.mCpuTime;
+        for (int step = 0; step < mSpeedStepTimes.length; step++) {
+            double ratio = (double) (mSpeedStepTimes[step] - baseline.mSpeedStepTimes[step])
+                    / totalTimeAtSpeeds;
+            power[CPU] += ratio * cpuTime
+                    * powerProfile.getAveragePower(PowerProfile.POWER_CPU_ACTIVE, step);
+        }
+        power[CPU] /= 1000;
+        power[WAKELOCK] = (mWakelockTime - baseline.mWakelockTime)
+                * powerProfile.getAveragePower(PowerProfile.POWER_CPU_AWAKE) / 1000;
+        power[WIFI] = (mWifiRunningTime - baseline.mWifiRunningTime)
+                * powerProfile.getAveragePower(PowerProfile.POWER_WIFI_ON) / 1000;
+        power[SENSOR] = (mSensorPower - baseline.mSensorPower) / 1000;
+
+        // mA*s to mAh
+        for (int i = 0; i < POWER_TYPES; i++) {
+            power[i] /= 3600;
+        }
+        // the cost per byte is already in mAh
+        power[DATA] = (mTcpBytes - baseline.mTcpBytes) * averageCostPerByte;
+        return power;
+    }
+
+    /**
+     * @return "cpu 1200ms, wakelock 300ms, gps 0ms, 3400 bytes" since baseline
+     */
+    String describeSince(PowerCounters baseline) {
+        baseline = getBaseline(baseline);
+        return String.format("cpu %dms, wakelock %dms, gps %dms, %d bytes", mCpuTime
+                - baseline.mCpuTime, mWakelockTime - baseline.mWakelockTime, mGpsTime
+                - baseline.mGpsTime, mTcpBytes - baseline.mTcpBytes);
+    }
+
+    /**
+     * @return baseline, or zero counters if the stats have been reset since it
+     */
+    private PowerCounters getBaseline(PowerCounters baseline) {
+        if (!isResetSince(baseline)) {
+            return baseline;
+        }
+        PowerCounters zero = new PowerCounters();
+        zero.mSpeedStepTimes = new long[mSpeedStepTimes.length];
+        return zero;
+    }
+}
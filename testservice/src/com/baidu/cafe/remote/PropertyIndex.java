@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hash index from the value of one property to the lines of a view tree
+ * which have the value. Exact lookup is a hash probe, prefix and contains
+ * lookups scan the distinct values instead of re-parsing every line.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class PropertyIndex {
+    private final static ArrayList<Integer>     EMPTY   = new ArrayList<Integer>();
+
+    private HashMap<String, ArrayList<Integer>> mValues = new HashMap<String, ArrayList<Integer>>();
+
+    /**
+     * @param viewTree
+     *            the view tree to be indexed
+     * @param key
+     *            property's name such as mID, or "name" for class name
+     */
+    PropertyIndex(ViewTree viewTree, String key) {
+        byte[] searchKey = ViewTree.toSearchKey(key);
+        for (int i = 0; i < viewTree.size(); i++) {
+            String value = viewTree.getValue(i, searchKey);
+            if (null == value) {
+                continue;
+            }
+            ArrayList<Integer> indexes = mValues.get(value);
+            if (null == indexes) {
+                indexes = new ArrayList<Integer>(1);
+                mValues.put(value, indexes);
+            }
+            indexes.add(i);
+        }
+    }
+
+    /**
+     * @param value
+     *            value to be searched
+     * @param searchMode
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_INCLUDE_MATCHING or
+     *            SEARCHMODE_PREFIX_MATCHING
+     * @return indexes of the matched lines in dump order
+     */
+    ArrayList<Integer> find(String value, int searchMode) {
+        if (ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING == searchMode) {
+            ArrayList<Integer> indexes = mValues.get(value);
+            return null == indexes ? EMPTY : indexes;
+        }
+
+        ArrayList<Integer> indexes = new ArrayList<Integer>();
+        for (Map.Entry<String, ArrayList<Integer>> entry : mValues.entrySet()) {
+            if (ViewPropertyProvider.isMatch(value, entry.getKey(), searchMode)) {
+                indexes.addAll(entry.getValue());
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+}
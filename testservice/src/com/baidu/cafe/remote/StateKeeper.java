@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import android.content.BroadcastReceiver;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.net.wifi.WifiManager;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Message;
+import android.provider.Settings;
+
+/**
+ * Keeps the device ready for test: adb enabled, airplane mode off, wifi on,
+ * screen on and unlocked, and stay awake while plugged.
+ *
+ * The states are checked when the settings or broadcasts of them change, and
+ * by a slow sweep for changes without any notification. A write of the
+ * check notifies the observers again, so the states are only written when
+ * they are wrong, or the check would never stop.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class StateKeeper {
+    private final static long SWEEP_INTERVAL = 60 * 1000;
+    /**
+     * one change usually comes with several notifications, they are merged
+     * into one check
+     */
+    private final static long CHECK_DELAY    = 200;
+    private final static int  MSG_CHECK      = 1;
+    private final static int  STAY_ON        = BatteryManager.BATTERY_PLUGGED_AC
+                                                     | BatteryManager.BATTERY_PLUGGED_USB;
+
+    private Context           mContext       = null;
+    private SystemLib         mSystemLib     = null;
+    private Handler           mHandler       = null;
+
+    StateKeeper(Context context, SystemLib systemLib) {
+        mContext = context;
+        mSystemLib = systemLib;
+    }
+
+    /**
+     * check the states at once, then whenever they change
+     */
+    void start() {
+        HandlerThread thread = new HandlerThread("keepState");
+        thread.start();
+        mHandler = new Handler(thread.getLooper()) {
+
+            @Override
+            public void handleMessage(Message msg) {
+                if (MSG_CHECK == msg.what) {
+                    check();
+                    sendEmptyMessageDelayed(MSG_CHECK, SWEEP_INTERVAL);
+                }
+            }
+        };
+
+        ContentObserver observer = new ContentObserver(mHandler) {
+
+            @Override
+            public void onChange(boolean selfChange) {
+                requestCheck();
+            }
+        };
+        ContentResolver resolver = mContext.getContentResolver();
+        resolver.registerContentObserver(Settings.Secure.getUriFor(Settings.Secure.ADB_ENABLED),
+                false, observer);
+        resolver.registerContentObserver(
+                Settings.System.getUriFor(Settings.System.AIRPLANE_MODE_ON), false, observer);
+        resolver.registerContentObserver(
+                Settings.System.getUriFor(Settings.System.STAY_ON_WHILE_PLUGGED_IN), false,
+                observer);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_AIRPLANE_MODE_CHANGED);
+        filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        mContext.registerReceiver(new BroadcastReceiver() {
+
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                requestCheck();
+            }
+        }, filter, null, mHandler);
+
+        mHandler.sendEmptyMessage(MSG_CHECK);
+    }
+
+    /**
+     * check soon, the sweep is scheduled again after the check
+     */
+    private void requestCheck() {
+        mHandler.removeMessages(MSG_CHECK);
+        mHandler.sendEmptyMessageDelayed(MSG_CHECK, CHECK_DELAY);
+    }
+
+    private void check() {
+        try {
+            if (!mSystemLib.isAdbEnabled()) {
+                mSystemLib.setAdbEnabled(true); // need android.permission.WRITE_SECURE_SETTINGS
+            }
+            if (mSystemLib.isAirplaneModeOn()) {
+                mSystemLib.setAirplaneMode(false);
+            }
+            if (!mSystemLib.isWifiEnabled()) {
+                mSystemLib.setWifiEnabled();
+            }
+            if (mSystemLib.isScreenLocked()) {
+                mSystemLib.setScreenUnlocked();
+            }
+            if (!mSystemLib.isScreenOn()) {
+                mSystemLib.setScreenOn();
+            }
+            if (mSystemLib.isLockPatternEnabled()) {
+                mSystemLib.setScreenUnlockSecurityNone();
+            }
+            if (Settings.System.getInt(mContext.getContentResolver(),
+                    Settings.System.STAY_ON_WHILE_PLUGGED_IN, 0) != STAY_ON) {
+                mSystemLib.setScreenStayAwake(true);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -117,11 +117,15 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Provide system services to get and set system state.
@@ -405,6 +409,29 @@ public class SystemLib {
         return technology;
     }
 
+    /**
+     * start or stop recording battery changes into the battery history
+     * 
+     * @param enabled
+     *            true to start, false to stop
+     */
+    public void setBatteryRecordingEnabled(boolean enabled) {
+        mBatteryState.setRecording(enabled);
+    }
+
+    /**
+     * get recorded battery changes in a time window
+     * 
+     * @param fromTime
+     *            System.currentTimeMillis() of the start, inclusive
+     * @param toTime
+     *            System.currentTimeMillis() of the end, inclusive
+     * @return samples in the format of BatteryHistory.export()
+     */
+    public byte[] getBatteryHistory(long fromTime, long toTime) {
+        return mBatteryState.getHistory(fromTime, toTime);
+    }
+
     /**
      * get bluetooth address
      * 
@@ -1655,8 +1682,16 @@ public class SystemLib {
         mContext.startService(intent);
     }
 
-    boolean        isinstallapkfinish = false;
-    public boolean isregister         = false;
+    volatile boolean isinstallapkfinish = false;
+    public boolean   isregister         = false;
+
+    /**
+     * installApkSync() of a sync and an async call share mReceiver and
+     * isinstallapkfinish, so installs run one by one, and mReceiver is not
+     * unregistered while an install is waiting for it
+     */
+    private final Object     mInstallLock  = new Object();
+    private volatile boolean mIsInstalling = false;
 
     /**
      * you must use "isPackageInstalled(String)" to judge if it is installed
@@ -1716,9 +1751,11 @@ public class SystemLib {
             }
         }
 
-        if (isregister) {
-            mContext.unregisterReceiver(mReceiver);
-            isregister = false;
+        synchronized (mReceiver) {
+            if (isregister && !mIsInstalling) {
+                mContext.unregisterReceiver(mReceiver);
+                isregister = false;
+            }
         }
 
         return flag;
@@ -1730,12 +1767,25 @@ public class SystemLib {
      * @return
      */
     public boolean installApkSync(String filename, long timeout) {
+        synchronized (mInstallLock) {
+            mIsInstalling = true;
+            try {
+                return installApkSyncLocked(filename, timeout);
+            } finally {
+                mIsInstalling = false;
+            }
+        }
+    }
+
+    private boolean installApkSyncLocked(String filename, long timeout) {
         boolean ret = false;
-        if (!isregister) {
-            isregister = true;
-            IntentFilter intentFilter = new IntentFilter(MyIntent.ACTION_INSTALL_BEGIN);
-            intentFilter.addAction(MyIntent.ACTION_INSTALL_END);
-            mContext.registerReceiver(mReceiver, intentFilter);
+        synchronized (mReceiver) {
+            if (!isregister) {
+                isregister = true;
+                IntentFilter intentFilter = new IntentFilter(MyIntent.ACTION_INSTALL_BEGIN);
+                intentFilter.addAction(MyIntent.ACTION_INSTALL_END);
+                mContext.registerReceiver(mReceiver, intentFilter);
+            }
         }
         isinstallapkfinish = false;
         //start the service
@@ -1938,6 +1988,50 @@ public class SystemLib {
         }
     }
 
+    private final static int LOG_TAIL_CAPACITY = 8192;
+    private LogTail          mLogTail          = new LogTail(LOG_TAIL_CAPACITY);
+
+    /**
+     * Keep one logcat running and its latest lines in memory, so logs can be
+     * read incrementally by readLogTail() instead of getLog().
+     * 
+     * @param filterSpecs
+     *            series of <tag>[:priority] such as "MyTest:I", null for all
+     *            logs
+     */
+    public void startLogTail(String[] filterSpecs) {
+        mLogTail.start(filterSpecs);
+    }
+
+    public void stopLogTail() {
+        mLogTail.stop();
+    }
+
+    /**
+     * @param fromSeq
+     *            sequence number of the first line wanted
+     * @param maxLines
+     *            max lines returned
+     * @return lines from fromSeq
+     */
+    public LogChunk readLogTail(long fromSeq, int maxLines) {
+        return mLogTail.read(fromSeq, maxLines);
+    }
+
+    /**
+     * block until a line matching regex is logged after fromSeq
+     * 
+     * @return sequence number of the matched line, -1 if timeout
+     */
+    public long waitForLogTail(String regex, long fromSeq, long timeout) {
+        try {
+            return mLogTail.waitFor(Pattern.compile(regex), fromSeq, timeout);
+        } catch (PatternSyntaxException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
     /**
      * delete an account
      * 
@@ -1967,49 +2061,94 @@ public class SystemLib {
         }, null);
     }
 
-    boolean isscreencapfinish = false;
+    /**
+     * ACTION_SCREENCAP_END counts it down, null when no capture is waiting
+     */
+    private volatile CountDownLatch mScreenCapLatch   = null;
+    private final Object            mScreenCapLock    = new Object();
+    private final static long       SCREENCAP_TIMEOUT = 3000;
 
     /**
      * take a screen capture at "/mnt/sdcard/DCIM/ScreenShot"
      * 
      * @param prefix
      *            means prefix string of png
+     * @return true if the capture finished in 3s
      */
-    public void screenCap(String prefix) {
-        boolean ret = false;
-        IntentFilter intentFilter = new IntentFilter(MyIntent.ACTION_SCREENCAP_BEGIN);
-        intentFilter.addAction(MyIntent.ACTION_SCREENCAP_END);
-        mContext.registerReceiver(mscreencapReceiver, intentFilter);
-        isscreencapfinish = false;
+    public boolean screenCap(String prefix) {
+        return screenCap(new String[] { prefix }, 0);
+    }
 
-        //start the service
-        Intent startservice = new Intent();
-        startservice.setAction(MyIntent.ACTION_PROXY);
-        startservice.putExtra(MyIntent.EXTRA_OPERATION, MyIntent.EXTRA_SCREENCAP);
-        startservice.putExtra(MyIntent.EXTRA_ARG1, prefix);
+    /**
+     * Take count screen captures at a fixed interval. A frame is requested
+     * without waiting for the previous one to be saved, so the interval is not
+     * stretched by encoding.
+     * 
+     * @param prefix
+     *            means prefix string of png, the index of the frame is
+     *            appended as "prefix_0", "prefix_1"...
+     * @param count
+     *            number of frames, at least 1
+     * @param interval
+     *            time between the requests of two frames in ms, not negative
+     * @return true if all of the captures finished, false if the arguments
+     *         are invalid
+     */
+    public boolean screenCapBurst(String prefix, int count, long interval) {
+        if (count < 1 || interval < 0) {
+            Log.print("screenCapBurst()'s arguments is not correct!");
+            return false;
+        }
+        String[] prefixes = new String[count];
+        for (int i = 0; i < count; i++) {
+            prefixes[i] = prefix + "_" + i;
+        }
+        return screenCap(prefixes, interval);
+    }
 
-        Log.print("startservice intent is " + startservice);
-        mContext.startService(startservice);
-        long timeout = 3000;
-        final long endTime = System.currentTimeMillis() + timeout;
-        while (true) {
-            final boolean timedOut = System.currentTimeMillis() > endTime;
-            if (timedOut) {
-                ret = false;
-                break;
-            }
-            if (isscreencapfinish) {
-                ret = true;
-                break;
-            }
+    /**
+     * Request a capture of each prefix from the proxy service and wait for
+     * their ACTION_SCREENCAP_END, which counts down a latch instead of being
+     * polled.
+     */
+    private boolean screenCap(String[] prefixes, long interval) {
+        if (0 == prefixes.length) {
+            return true;
+        }
+        synchronized (mScreenCapLock) {
+            CountDownLatch latch = new CountDownLatch(prefixes.length);
+            IntentFilter intentFilter = new IntentFilter(MyIntent.ACTION_SCREENCAP_BEGIN);
+            intentFilter.addAction(MyIntent.ACTION_SCREENCAP_END);
+            mScreenCapLatch = latch;
+            mContext.registerReceiver(mscreencapReceiver, intentFilter);
+
+            boolean ret = false;
             try {
-                Thread.sleep(500);
+                long startTime = SystemClock.uptimeMillis();
+                for (int i = 0; i < prefixes.length; i++) {
+                    long delay = startTime + i * interval - SystemClock.uptimeMillis();
+                    if (delay > 0) {
+                        Thread.sleep(delay);
+                    }
+                    //start the service
+                    Intent startservice = new Intent();
+                    startservice.setAction(MyIntent.ACTION_PROXY);
+                    startservice.putExtra(MyIntent.EXTRA_OPERATION, MyIntent.EXTRA_SCREENCAP);
+                    startservice.putExtra(MyIntent.EXTRA_ARG1, prefixes[i]);
+                    Log.print("startservice intent is " + startservice);
+                    mContext.startService(startservice);
+                }
+                // the proxy captures one by one, so wait for the rest in turn
+                ret = latch.await(SCREENCAP_TIMEOUT * latch.getCount(), TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 e.printStackTrace();
+            } finally {
+                mContext.unregisterReceiver(mscreencapReceiver);
+                mScreenCapLatch = null;
             }
+            Log.print("ret is " + ret + ", false means screencap failed!");
+            return ret;
         }
-        Log.print("ret is " + ret + "false means screencap failed!");
-        mContext.unregisterReceiver(mscreencapReceiver);
     }
 
     public final BroadcastReceiver mscreencapReceiver = new BroadcastReceiver() {
@@ -2019,17 +2158,15 @@ public class SystemLib {
                                                               if (intent
                                                                       .getAction()
                                                                       .equals(MyIntent.ACTION_SCREENCAP_BEGIN)) {
-                                                                  //  mediascantext.setText("Media Scanner started scanning " + intent.getData().getPath());
-                                                                  isscreencapfinish = false;
                                                                   Log.print("begin to screencap");
                                                               } else if (intent
                                                                       .getAction()
                                                                       .equals(MyIntent.ACTION_SCREENCAP_END)) {
-                                                                  //  mediascantext.setText("Media Scanner finished scanning " + intent.getData().getPath());  
-                                                                  //          sendBroadcast(new Intent("com.baidu.RES_SCAN_COMPLETED"));
-                                                                  isscreencapfinish = true;
+                                                                  CountDownLatch latch = mScreenCapLatch;
+                                                                  if (latch != null) {
+                                                                      latch.countDown();
+                                                                  }
                                                                   Log.print("end to screencap");
-
                                                               }
                                                           }
                                                       };
@@ -2203,6 +2340,9 @@ public class SystemLib {
     }
 
     /**
+     * Keep adb enabled, airplane mode off, wifi on, screen on and unlocked.
+     * The states are restored when they change instead of being polled.
+     * 
      * NOTICE:multi-invoking is allowed.
      */
     public void keepState() {
@@ -2212,48 +2352,16 @@ public class SystemLib {
         }
 
         LockActivity.keep_state_enable = true;
-        new Thread(new Runnable() {
-            public void run() {
-                while (true) {
-                    try {
-                        if (!isAdbEnabled()) {
-                            setAdbEnabled(true); // need android.permission.WRITE_SECURE_SETTINGS
-                        }
-                        //                        setNonMarketAppsAllowed(true); // android.permission.WRITE_SECURE_SETTINGS
-                        //                        if (isAirplaneModeOn()) {
-                        setAirplaneMode(false);
-                        //                        }
-                        if (!isWifiEnabled()) {
-                            setWifiEnabled();
-                        }
-                        if (isScreenLocked()) {
-                            setScreenUnlocked();
-                        }
-                        if (!isScreenOn()) {
-                            setScreenOn();
-                        }
-                        if (isLockPatternEnabled()) {
-                            setScreenUnlockSecurityNone();
-                        }
-                        setScreenStayAwake(true);
-
-                        Thread.sleep(2000);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-            }
-        }, "keepState").start();
+        new StateKeeper(mContext, this).start();
     }
 
+    /**
+     * AIRPLANE_MODE_ON is in the system table, where setAirplaneMode() writes
+     * it and StateKeeper observes it
+     */
     public boolean isAirplaneModeOn() {
-        try {
-            return Settings.Secure.getInt(mContext.getContentResolver(),
-                    Settings.System.AIRPLANE_MODE_ON) == 0 ? false : true;
-        } catch (Exception e) {
-            // eat it
-        }
-        return false;
+        return Settings.System.getInt(mContext.getContentResolver(),
+                Settings.System.AIRPLANE_MODE_ON, 0) != 0;
     }
 
     public static class TimeLocker {
@@ -2365,12 +2473,14 @@ public class SystemLib {
     private long         mStatsPeriod = 0;
     // How much the apps together have left WIFI running.
     private long         mAppWifiRunning;
+    // counters of the packages at the beginning of their tests
+    private HashMap<String, PowerCounters> mPowerBaselines = new HashMap<String, PowerCounters>();
 
     private void create() {
         mAppWifiRunning = 0;
         mPowerProfile = new PowerProfile(mContext);
         mBatteryInfo = IBatteryStats.Stub.asInterface(ServiceManager.getService("batteryinfo"));
-        load();
+        load(true);
     }
 
     /**
@@ -2561,14 +2671,21 @@ public class SystemLib {
         //        }
     }
 
-    private void load() {
+    /**
+     * @param distributeWork
+     *            true to share the cpu time of the wifi process among the uids
+     *            which use wifi, it walks every uid
+     */
+    private void load(boolean distributeWork) {
         try {
             byte[] data = mBatteryInfo.getStatistics();
             Parcel parcel = Parcel.obtain();
             parcel.unmarshall(data, 0, data.length);
             parcel.setDataPosition(0);
             mStats = com.android.internal.os.BatteryStatsImpl.CREATOR.createFromParcel(parcel);
-            mStats.distributeWorkLocked(BatteryStats.STATS_SINCE_CHARGED);
+            if (distributeWork) {
+                mStats.distributeWorkLocked(BatteryStats.STATS_SINCE_CHARGED);
+            }
         } catch (RemoteException e) {
             Log.print("RemoteException:" + e);
         }
@@ -2597,6 +2714,88 @@ public class SystemLib {
         }
     }
 
+    /**
+     * Read the power counters of the package as the baseline of a test.
+     * 
+     * The whole stats of batteryinfo are still fetched and unparceled at
+     * both ends of a test, which costs about as much as the first half of
+     * processAppBatteryUsage(). What is saved is the work on the parsed
+     * stats: only the uid of the package is read, and the cpu time of the
+     * wifi process is not shared among the uids, so it is not counted for
+     * the package either.
+     * 
+     * @param packageName
+     *            package under test
+     */
+    public synchronized void beginPowerUsage(String packageName) {
+        PowerCounters baseline = readPowerCounters(packageName);
+        if (baseline != null) {
+            mPowerBaselines.put(packageName, baseline);
+        }
+    }
+
+    /**
+     * Estimate the power used by the package since beginPowerUsage(). The
+     * counters only move when the device runs on battery, and they restart
+     * from 0 when it is plugged or unplugged. After such a reset only the
+     * power since the reset is counted.
+     * 
+     * @param packageName
+     *            package under test
+     * @return power in mAh, -1 if failed
+     */
+    public synchronized double endPowerUsage(String packageName) {
+        PowerCounters baseline = mPowerBaselines.remove(packageName);
+        if (null == baseline) {
+            Log.print("beginPowerUsage(" + packageName + ") has not been called");
+            return -1;
+        }
+        PowerCounters counters = readPowerCounters(packageName);
+        if (null == counters) {
+            return -1;
+        }
+
+        if (counters.isResetSince(baseline)) {
+            Log.print("power counters were reset during the test, count from the reset");
+        }
+        double[] power = counters.getPowerSince(baseline, mPowerProfile, getAverageDataCost());
+        double total = 0;
+        for (double p : power) {
+            total += p;
+        }
+        Log.print(String.format(
+                "%s: %.4fmAh (cpu %.4f, wakelock %.4f, data %.4f, wifi %.4f, sensor %.4f) %s",
+                packageName, total, power[PowerCounters.CPU], power[PowerCounters.WAKELOCK],
+                power[PowerCounters.DATA], power[PowerCounters.WIFI], power[PowerCounters.SENSOR],
+                counters.describeSince(baseline)));
+        return total;
+    }
+
+    private PowerCounters readPowerCounters(String packageName) {
+        int uid = 0;
+        try {
+            uid = mPackageManager.getApplicationInfo(packageName, 0).uid;
+        } catch (NameNotFoundException e) {
+            e.printStackTrace();
+            return null;
+        }
+        if (null == mPowerProfile) {
+            mPowerProfile = new PowerProfile(mContext);
+            mBatteryInfo = IBatteryStats.Stub.asInterface(ServiceManager.getService("batteryinfo"));
+        }
+        load(false);
+        if (null == mStats) {
+            return null;
+        }
+
+        long uSecTime = mStats.computeBatteryRealtime(SystemClock.elapsedRealtime() * 1000,
+                mStatsType);
+        SensorManager sensorManager = (SensorManager) mContext
+                .getSystemService(Context.SENSOR_SERVICE);
+        return PowerCounters.read(mStats.getUidStats().get(uid), uSecTime, mStatsType,
+                mPowerProfile, sensorManager);
+    }
+
     public void printPackagePowerUsage() {
         //PowerTutorConnector ptc = new PowerTutorConnector(mContext);
         //ptc.connectToPowerTutor();
@@ -2652,4 +2851,111 @@ public class SystemLib {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Gather the values of several device states in one pass. Battery fields
+     * share one battery broadcast and top activity fields share one query of
+     * running tasks.
+     * 
+     * @param fields
+     *            names in DeviceSnapshot, null for DeviceSnapshot.ALL_FIELDS
+     * @return the snapshot, the value of an unknown field is null
+     */
+    public DeviceSnapshot getDeviceSnapshot(String[] fields) {
+        if (null == fields) {
+            fields = DeviceSnapshot.ALL_FIELDS;
+        }
+
+        boolean needBattery = false;
+        for (String field : fields) {
+            if (field != null && field.startsWith("battery")) {
+                needBattery = true;
+            }
+        }
+        if (needBattery) {
+            mBatteryState.init();
+        }
+
+        String[] values = new String[fields.length];
+        ComponentName topActivity = null;
+        for (int i = 0; i < fields.length; i++) {
+            String field = fields[i];
+            try {
+                if (DeviceSnapshot.TOP_ACTIVITY.equals(field)
+                        || DeviceSnapshot.TOP_PACKAGE.equals(field)) {
+                    if (null == topActivity) {
+                        topActivity = mActivityManager.getRunningTasks(1).get(0).topActivity;
+                    }
+                    values[i] = DeviceSnapshot.TOP_ACTIVITY.equals(field) ? topActivity
+                            .getClassName() : topActivity.getPackageName();
+                } else {
+                    values[i] = getDeviceState(field);
+                }
+            } catch (Exception e) {
+                // one broken state should not lose the others
+                e.printStackTrace();
+            }
+        }
+
+        if (needBattery) {
+            mBatteryState.deinit();
+        }
+        return new DeviceSnapshot(fields, values, System.currentTimeMillis());
+    }
+
+    private String getDeviceState(String field) {
+        if (DeviceSnapshot.BATTERY_STATUS.equals(field)) {
+            return mBatteryState.getStatus();
+        } else if (DeviceSnapshot.BATTERY_HEALTH.equals(field)) {
+            return mBatteryState.getHealth();
+        } else if (DeviceSnapshot.BATTERY_PRESENT.equals(field)) {
+            return String.valueOf(mBatteryState.getPresent());
+        } else if (DeviceSnapshot.BATTERY_LEVEL.equals(field)) {
+            return String.valueOf(mBatteryState.getLevel());
+        } else if (DeviceSnapshot.BATTERY_SCALE.equals(field)) {
+            return String.valueOf(mBatteryState.getScale());
+        } else if (DeviceSnapshot.BATTERY_PLUGGED.equals(field)) {
+            return mBatteryState.getPlugged();
+        } else if (DeviceSnapshot.BATTERY_VOLTAGE.equals(field)) {
+            return String.valueOf(mBatteryState.getVoltage());
+        } else if (DeviceSnapshot.BATTERY_TEMPERATURE.equals(field)) {
+            return String.valueOf(mBatteryState.getTemperature());
+        } else if (DeviceSnapshot.SCREEN_ON.equals(field)) {
+            return String.valueOf(isScreenOn());
+        } else if (DeviceSnapshot.SCREEN_LOCKED.equals(field)) {
+            return String.valueOf(isScreenLocked());
+        } else if (DeviceSnapshot.SCREEN_BRIGHTNESS.equals(field)) {
+            return String.valueOf(getScreenBrightness());
+        } else if (DeviceSnapshot.WIFI_STATE.equals(field)) {
+            return String.valueOf(getWifiState());
+        } else if (DeviceSnapshot.WIFI_ENABLED.equals(field)) {
+            return String.valueOf(isWifiEnabled());
+        } else if (DeviceSnapshot.NETWORK_ENABLE.equals(field)) {
+            return String.valueOf(isNetworkEnable());
+        } else if (DeviceSnapshot.NETWORK_TYPE.equals(field)) {
+            return getNetworkType();
+        } else if (DeviceSnapshot.DATA_STATE.equals(field)) {
+            return getDataState();
+        } else if (DeviceSnapshot.FLIGHT_MODE_STATE.equals(field)) {
+            return String.valueOf(getFlightModeState());
+        } else if (DeviceSnapshot.SIM_CARD_STATE.equals(field)) {
+            return String.valueOf(getSimCardState());
+        } else if (DeviceSnapshot.BLUETOOTH_ENABLED.equals(field)) {
+            return String.valueOf(isBluetoothEnabled());
+        } else if (DeviceSnapshot.MEMORY_INTERNAL_AVAIL.equals(field)) {
+            return String.valueOf(getMemoryInternalAvail());
+        } else if (DeviceSnapshot.STORAGE_CARD_AVAIL.equals(field)) {
+            return String.valueOf(getStorageCardAvail());
+        } else if (DeviceSnapshot.AUDIO_MODE.equals(field)) {
+            return String.valueOf(getAudioMode());
+        } else if (DeviceSnapshot.RINGTONE_MODE.equals(field)) {
+            return String.valueOf(getRingtoneMode());
+        } else if (DeviceSnapshot.MUSIC_ACTIVE.equals(field)) {
+            return String.valueOf(isMusicActive());
+        } else if (DeviceSnapshot.SYSTEM_TIME.equals(field)) {
+            return getSystemTime();
+        }
+        Log.print("unknown field of device snapshot: " + field);
+        return null;
+    }
 }
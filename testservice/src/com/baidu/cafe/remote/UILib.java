@@ -21,7 +21,6 @@ import java.util.ArrayList;
 import android.app.Instrumentation;
 import android.os.SystemClock;
 import android.view.KeyEvent;
-import android.view.MotionEvent;
 import android.view.ViewConfiguration;
 
 /**
@@ -44,15 +43,23 @@ public class UILib {
     private final static int     EVENT_SENDER          = USE_MONKEY;
     private final static int     STEP_COUNT            = 100;
     private final static int     SCROLL_TIME_OUT       = 120000;
+    private final static long    MIN_WAIT_DELAY        = 100;
+    private final static long    MAX_WAIT_DELAY        = 1600;
+    // properties of a scroll view read in one query
+    private final static String[] SCROLL_KEYS          = { "coordinate", "mFirstPosition",
+            "mScrollY", "childCount", "mItemCount" };
     private final static int     DOWN                  = 0;
     private final static int     UP                    = 1;
 
     private ViewPropertyProvider mViewPropertyProvider = null;
     private Instrumentation      mInstrumentation      = null;
+    private MonkeyNetwork        mMonkeyNetwork        = new MonkeyNetwork();
+    private GesturePlayer        mGesturePlayer        = null;
 
     public UILib(ViewPropertyProvider viewPropertyProvider) {
         mViewPropertyProvider = viewPropertyProvider;
         mInstrumentation = new Instrumentation();
+        mGesturePlayer = new GesturePlayer(mInstrumentation);
     }
 
     @Override
@@ -79,14 +86,24 @@ public class UILib {
             }
             break;
         case USE_MONKEY:
-            new MonkeyNetwork().key(MonkeyNetwork.DOWN, keyCode);
+            mMonkeyNetwork.key(MonkeyNetwork.DOWN, keyCode);
             if (longPress) {
+                mMonkeyNetwork.sync();
                 SystemClock.sleep((int) (ViewConfiguration.getLongPressTimeout() * 1.5f));
             }
-            new MonkeyNetwork().key(MonkeyNetwork.UP, keyCode);
-            //            new MonkeyNetwork().done();
+            mMonkeyNetwork.key(MonkeyNetwork.UP, keyCode);
+            mMonkeyNetwork.sync();
             break;
         }
+        mViewPropertyProvider.invalidateDumpCache();
+    }
+
+    /**
+     * @return count, failure count and average latency of each type of
+     *         command sent to monkey server
+     */
+    public String getMonkeyStatistics() {
+        return mMonkeyNetwork.getStatistics();
     }
 
     /**
@@ -124,9 +141,11 @@ public class UILib {
             mInstrumentation.sendStringSync(text);
             break;
         case USE_MONKEY:
-            new MonkeyNetwork().type(text);
+            mMonkeyNetwork.type(text);
+            mMonkeyNetwork.sync();
             break;
         }
+        mViewPropertyProvider.invalidateDumpCache();
     }
 
     /**
@@ -217,44 +236,19 @@ public class UILib {
             timeout = SCROLL_TIME_OUT;
         }
 
-        ArrayList<String[]> getValues;
         final long endTime = System.currentTimeMillis() + timeout;
-
-        while (true) {
-            final boolean timedOut = System.currentTimeMillis() > endTime;
-            if (timedOut) {
-                Log.print("click View timeout");
-                return false;
-            }
-
-            getValues = mViewPropertyProvider.getViewsProperties(searchKey, searchValue,
-                    searchMode, index + 1, new String[] { "coordinate" }, true, true);
-            Log.print("getValues.size():" + getValues.size());
-
-            if (getValues.size() > index) {
-                final String[] coordinates = getValues.get(index)[0].split("\\,");
-                if (scrollViewId != null
-                        && !isClickInList(coordinates, scrollViewId, scrollViewIndex)) {
-                    Log.print("Scroll half height of scroll view, because target view is not completely visible.");
-                    scrollList(DOWN, (float) 0.5, scrollViewId, scrollViewIndex);
-                    getValues = mViewPropertyProvider.getViewsProperties(searchKey, searchValue,
-                            searchMode, index + 1, new String[] { "coordinate" }, true, true);
-                }
-                break;
-            }
-
-            if (scrollViewId != null && !scrollList(DOWN, 1, scrollViewId, scrollViewIndex)) {
-                if (index >= getValues.size()) {
-                    Log.print("Found Failed:" + searchKey + " = " + searchValue);
-                    return false;
-                }
-                break;
-            }
-
-            getValues.clear();
+        String coordinate = null;
+        if (scrollViewId != null) {
+            coordinate = scrollToFind(searchKey, searchValue, searchMode, index, scrollViewId,
+                    scrollViewIndex, endTime);
+        } else {
+            coordinate = waitToFind(searchKey, searchValue, searchMode, index, endTime);
+        }
+        if (null == coordinate) {
+            return false;
         }
 
-        final String[] coordinates = getValues.get(index)[0].split("\\,");
+        final String[] coordinates = coordinate.split("\\,");
         int[] centerXY = getCenterXY(coordinates);
         int centerX = centerXY[0] + xOffset;
         int centerY = centerXY[1] + yOffset;
@@ -267,22 +261,96 @@ public class UILib {
     }
 
     /**
-     * check whether the given scroll view's center coordinate is in the given
-     * coordinates
+     * Query the target again whenever windows change, and back off while
+     * nothing changes.
      * 
-     * @param coordinates
-     *            all of coordinates to be calculated
-     * @param scrollViewId
-     *            the given scroll view's id
-     * @param scrollViewIndex
-     *            the given scroll view's index level
-     * @return true if the the given scroll view's center coordinate is in the
-     *         given coordinates
+     * @return coordinate of the target, null if timeout
      */
-    private boolean isClickInList(String[] coordinates, String scrollViewId, int scrollViewIndex) {
-        int[] clickXY = getCenterXY(coordinates);
-        String[] xywh = getScrollProperty(scrollViewId, scrollViewIndex, "coordinate", false)
-                .split("\\,");
+    private String waitToFind(String searchKey, String searchValue, int searchMode, int index,
+            long endTime) {
+        long delay = MIN_WAIT_DELAY;
+        while (System.currentTimeMillis() <= endTime) {
+            final long changeCount = mViewPropertyProvider.getWindowChangeCount();
+            ArrayList<String[]> getValues = mViewPropertyProvider.getViewsProperties(searchKey,
+                    searchValue, searchMode, index + 1, new String[] { "coordinate" }, true, true);
+            Log.print("getValues.size():" + getValues.size());
+            if (getValues.size() > index) {
+                return getValues.get(index)[0];
+            }
+
+            // re-query at once when windows change, else back off
+            long remaining = Math.max(endTime - System.currentTimeMillis(), 0);
+            if (mViewPropertyProvider.waitForWindowChange(changeCount,
+                    Math.min(delay, remaining))) {
+                delay = MIN_WAIT_DELAY;
+            } else {
+                delay = Math.min(delay * 2, MAX_WAIT_DELAY);
+            }
+        }
+        Log.print("click View timeout");
+        return null;
+    }
+
+    /**
+     * Scroll the scroll view page by page until the target appears in it.
+     * Each page costs one dump which answers both the target and the scroll
+     * state. The end of a list is known from its first position, child count
+     * and item count, so no drag is wasted at the end.
+     * 
+     * @return coordinate of the target, null if not found
+     */
+    private String scrollToFind(String searchKey, String searchValue, int searchMode, int index,
+            String scrollViewId, int scrollViewIndex, long endTime) {
+        ArrayList<ViewQuery> queries = new ArrayList<ViewQuery>();
+        queries.add(new ViewQuery(searchKey, searchValue, searchMode, index + 1,
+                new String[] { "coordinate" }).visible());
+        queries.add(new ViewQuery("mID", scrollViewId,
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING, scrollViewIndex + 1,
+                SCROLL_KEYS).visible());
+
+        int scrollAmount = -1;
+        while (System.currentTimeMillis() <= endTime) {
+            ViewQueryResult result = mViewPropertyProvider.getViewPropertiesBatch(queries, true);
+            String[] target = result.get(0);
+            String[] scrollState = result.get(1);
+            if (null == scrollState) {
+                Log.print("Found Failed: mID = " + scrollViewId);
+                return null == target ? null : target[0];
+            }
+
+            if (target != null) {
+                if (isInside(target[0], scrollState[0])) {
+                    return target[0];
+                }
+                Log.print("Scroll half height of scroll view, because target view is not completely visible.");
+                dragPage(DOWN, (float) 0.5, scrollState[0]);
+                ArrayList<String[]> getValues = mViewPropertyProvider.getViewsProperties(
+                        searchKey, searchValue, searchMode, index + 1,
+                        new String[] { "coordinate" }, true, true);
+                return getValues.size() > index ? getValues.get(index)[0] : target[0];
+            }
+
+            if (getScrollAmount(scrollState) == scrollAmount || isScrollEnd(scrollState)) {
+                Log.print("Found Failed:" + searchKey + " = " + searchValue);
+                return null;
+            }
+            scrollAmount = getScrollAmount(scrollState);
+            dragPage(DOWN, 1, scrollState[0]);
+        }
+        Log.print("click View timeout");
+        return null;
+    }
+
+    /**
+     * @param coordinate
+     *            "x,y,width,height" of a view
+     * @param scrollCoordinate
+     *            "x,y,width,height" of the scroll view
+     * @return true if the center of the view is in the scroll view
+     */
+    private boolean isInside(String coordinate, String scrollCoordinate) {
+        int[] clickXY = getCenterXY(coordinate.split("\\,"));
+        String[] xywh = scrollCoordinate.split("\\,");
         int scrollViewX = Integer.valueOf(xywh[0]);
         int scrollViewY = Integer.valueOf(xywh[1]);
         int scrollViewWidth = Integer.valueOf(xywh[2]);
@@ -339,7 +407,10 @@ public class UILib {
     }
 
     /**
-     * touch screen including two ways: instrumentation or native event
+     * touch screen including two ways: instrumentation or native event. The
+     * steps are sent one right after another as they always were, so drag()
+     * and scroll results do not depend on the step count; use
+     * performGesture() for a paced swipe.
      * 
      * @param fromX
      *            the x value of the original dot
@@ -356,120 +427,68 @@ public class UILib {
      */
     private void touch(float fromX, float toX, float fromY, float toY, int stepCount,
             int longClickTime) {
-        switch (EVENT_SENDER) {
-        case USE_INSTRUMENTATION:
-            touchUseInstrumentation(fromX, toX, fromY, toY, stepCount, longClickTime);
-            break;
-        case USE_MONKEY:
-            touchUseMonkey(fromX, toX, fromY, toY, stepCount, longClickTime);
-            break;
+        if (stepCount > 0 && longClickTime > 0) {
+            Log.print("touch's param error: stepCount > 0 && longClickTime > 0");
         }
+        performGesture(Gesture.touch(fromX, toX, fromY, toY, stepCount, longClickTime, 0));
     }
 
     /**
-     * touch screen from X to Y continually, maybe many steps according to your
-     * params
+     * play a whole gesture, each event is sent at its time from the start of
+     * the gesture
      * 
-     * @param fromX
-     *            the x value of the original dot
-     * @param toX
-     *            the x value of the destination dot
-     * @param fromY
-     *            the y value of the original value
-     * @param toY
-     *            the y value of the destination dot
-     * @param stepCount
-     *            the step to touch from X to Y
-     * @param longClickTime
-     *            touch time length
+     * @param gesture
+     *            the gesture to be played
      */
-    private void touchUseInstrumentation(float fromX, float toX, float fromY, float toY,
-            int stepCount, int longClickTime) {
-        if (stepCount > 0 && longClickTime > 0) {
-            Log.print("touchUseInstrumentation's param error: stepCount > 0 && longClickTime > 0");
-        }
-
-        long downTime = SystemClock.uptimeMillis();
-        long eventTime = SystemClock.uptimeMillis();
-        float x = fromX;
-        float y = fromY;
-        float xStep = 0;
-        float yStep = 0;
-
-        if (stepCount > 0) {
-            xStep = (toX - fromX) / stepCount;
-            yStep = (toY - fromY) / stepCount;
-        }
-
-        mInstrumentation.sendPointerSync(MotionEvent.obtain(downTime, eventTime,
-                MotionEvent.ACTION_DOWN, x, y, 0));
-
-        for (int i = 0; i < stepCount; ++i) {
-            y += yStep;
-            x += xStep;
-            eventTime = SystemClock.uptimeMillis();
-            mInstrumentation.sendPointerSync(MotionEvent.obtain(downTime, eventTime,
-                    MotionEvent.ACTION_MOVE, x, y, 0));
+    public void performGesture(Gesture gesture) {
+        if (null == gesture || 0 == gesture.size()) {
+            return;
         }
 
-        if (longClickTime > 0) {
-            mInstrumentation.sendPointerSync(MotionEvent.obtain(downTime, eventTime,
-                    MotionEvent.ACTION_MOVE, x, y, 0));
-            SystemClock.sleep(longClickTime);
+        // monkey server has only one pointer
+        if (USE_INSTRUMENTATION == EVENT_SENDER || gesture.getPointerCount() > 1) {
+            mGesturePlayer.play(gesture);
+        } else {
+            performGestureUseMonkey(gesture);
         }
-
-        eventTime = SystemClock.uptimeMillis();
-        mInstrumentation.sendPointerSync(MotionEvent.obtain(downTime, eventTime,
-                MotionEvent.ACTION_UP, x, y, 0));
+        mViewPropertyProvider.invalidateDumpCache();
     }
 
     /**
-     * touch screen using native event
+     * Commands are pipelined to monkey server, it only waits for the replies
+     * before a delay so that the events before the delay have been injected
+     * when the delay starts.
      * 
-     * @param fromX
-     *            the x value of the original dot
-     * @param toX
-     *            the x value of the destination dot
-     * @param fromY
-     *            the y value of the original value
-     * @param toY
-     *            the y value of the destination dot
-     * @param stepCount
-     *            the step to touch from X to Y
-     * @param longClickTime
-     *            touch time length
+     * @param gesture
+     *            the gesture to be played
      */
-    private void touchUseMonkey(float fromX, float toX, float fromY, float toY, int stepCount,
-            int longClickTime) {
-        if (stepCount > 0 && longClickTime > 0) {
-            Log.print("touchUseInstrumentation's param error: stepCount > 0 && longClickTime > 0");
-        }
-
-        int x = (int) fromX;
-        int y = (int) fromY;
-        float xStep = 0;
-        float yStep = 0;
-
-        if (stepCount > 0) {
-            xStep = (toX - fromX) / stepCount;
-            yStep = (toY - fromY) / stepCount;
-        }
-
-        new MonkeyNetwork().touch(MonkeyNetwork.DOWN, x, y);
+    private void performGestureUseMonkey(Gesture gesture) {
+        long startTime = SystemClock.uptimeMillis();
+        long firstTime = gesture.getTime(0);
+
+        for (int i = 0; i < gesture.size(); i++) {
+            long eventTime = startTime + gesture.getTime(i) - firstTime;
+            if (eventTime > SystemClock.uptimeMillis()) {
+                mMonkeyNetwork.sync();
+                sleepUntil(eventTime);
+            }
 
-        for (int i = 0; i < stepCount; ++i) {
-            y += yStep;
-            x += xStep;
-            new MonkeyNetwork().touch(MonkeyNetwork.MOVE, x, y);
+            String type = MonkeyNetwork.MOVE;
+            if (Gesture.ACTION_DOWN == gesture.getAction(i)) {
+                type = MonkeyNetwork.DOWN;
+            } else if (Gesture.ACTION_UP == gesture.getAction(i)) {
+                type = MonkeyNetwork.UP;
+            }
+            mMonkeyNetwork.touch(type, (int) gesture.getX(i), (int) gesture.getY(i));
         }
+        mMonkeyNetwork.sync();
+    }
 
-        if (longClickTime > 0) {
-            new MonkeyNetwork().touch(MonkeyNetwork.MOVE, x, y);
-            SystemClock.sleep(longClickTime);
+    private void sleepUntil(long uptime) {
+        long delay = uptime - SystemClock.uptimeMillis();
+        if (delay > 0) {
+            SystemClock.sleep(delay);
         }
-
-        new MonkeyNetwork().touch(MonkeyNetwork.UP, x, y);
-        //        new MonkeyNetwork().done();
     }
 
     /**
@@ -485,70 +504,87 @@ public class UILib {
      */
     public boolean scrollList(int direction, float scrollDistance, String scrollViewId,
             int scrollViewIndex) {
-        String[] xywh = getScrollProperty(scrollViewId, scrollViewIndex, "coordinate", false)
-                .split("\\,");
+        String[] scrollState = getScrollState(scrollViewId, scrollViewIndex, false);
+        if (null == scrollState) {
+            Log.print("scroll view not found: " + scrollViewId);
+            return false;
+        }
+
+        dragPage(direction, scrollDistance, scrollState[0]);
+
+        String[] newScrollState = getScrollState(scrollViewId, scrollViewIndex, true);
+        return newScrollState != null
+                && getScrollAmount(newScrollState) != getScrollAmount(scrollState);
+    }
+
+    /**
+     * @param direction
+     *            scroll direction
+     * @param scrollDistance
+     *            scroll distance that how many height of scrollView
+     * @param scrollCoordinate
+     *            "x,y,width,height" of the scroll view
+     */
+    private void dragPage(int direction, float scrollDistance, String scrollCoordinate) {
+        String[] xywh = scrollCoordinate.split("\\,");
         int x = Integer.valueOf(xywh[0]);
         int y = Integer.valueOf(xywh[1]);
         int width = Integer.valueOf(xywh[2]);
         int height = Integer.valueOf(xywh[3]);
         int centerX = x + width / 2;
 
-        int scrollAmount = getScrollAmount(scrollViewId, scrollViewIndex, false);
         if (direction == DOWN) {
             drag(centerX, centerX, (y + height - 1) * scrollDistance, y + 1, STEP_COUNT);
         } else if (direction == UP) {
             drag(centerX, centerX, y + 1, (y + height - 1) * scrollDistance, STEP_COUNT);
         }
-
-        return getScrollAmount(scrollViewId, scrollViewIndex, true) == scrollAmount ? false : true;
     }
 
     /**
      * get the amount of the scroll
      * 
-     * @param scrollViewId
-     *            the given scroll view's id
-     * @param scrollViewIndex
-     *            the given scroll view's index level
-     * @param getNew
-     *            true if the view is already dumped, else false
+     * @param scrollState
+     *            values of SCROLL_KEYS of the scroll view
      * @return the amount of the scroll
      */
-    private int getScrollAmount(String scrollViewId, int scrollViewIndex, boolean getNew) {
-        int scrollAmount = 0;
-        String mFirstPosition = getScrollProperty(scrollViewId, scrollViewIndex, "mFirstPosition",
-                getNew);
-        String mScrollY = getScrollProperty(scrollViewId, scrollViewIndex, "mScrollY", getNew);
-
-        if (null == mFirstPosition) {
+    private int getScrollAmount(String[] scrollState) {
+        if (null == scrollState[1]) {
             // scrollview
-            scrollAmount = Integer.valueOf(mScrollY);
-        } else {
-            // listview gridview
-            scrollAmount = Integer.valueOf(mFirstPosition);
+            return Integer.valueOf(scrollState[2]);
+        }
+        // listview gridview
+        return Integer.valueOf(scrollState[1]);
+    }
+
+    /**
+     * @param scrollState
+     *            values of SCROLL_KEYS of the scroll view
+     * @return true if the last item of an adapter view has been laid out
+     */
+    private boolean isScrollEnd(String[] scrollState) {
+        if (null == scrollState[1] || null == scrollState[3] || null == scrollState[4]) {
+            return false;
         }
-        return scrollAmount;
+        return Integer.valueOf(scrollState[1]) + Integer.valueOf(scrollState[3]) >= Integer
+                .valueOf(scrollState[4]);
     }
 
     /**
-     * get scroll view's properties including its x and y value, and its height
-     * and with
+     * get scroll view's coordinate and scroll position in one query
      * 
      * @param scrollViewId
      *            the given scroll view's id
      * @param scrollViewIndex
      *            the given scroll view's index level
-     * @param getKey
-     *            what the keys u wanna to get its properties
      * @param getNew
      *            true if the view is already dumped, else false
-     * @return the given scroll view's properties
+     * @return values of SCROLL_KEYS, null if the scroll view is not found
      */
-    private String getScrollProperty(String scrollViewId, int scrollViewIndex, String getKey,
-            boolean getNew) {
-        return mViewPropertyProvider.getViewsProperties("mID", scrollViewId,
-                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING, scrollViewIndex + 1,
-                new String[] { getKey }, getNew, true).get(scrollViewIndex)[0];
+    private String[] getScrollState(String scrollViewId, int scrollViewIndex, boolean getNew) {
+        ArrayList<String[]> getValues = mViewPropertyProvider.getViewsProperties("mID",
+                scrollViewId, ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING,
+                scrollViewIndex + 1, SCROLL_KEYS, getNew, true);
+        return getValues.size() > scrollViewIndex ? getValues.get(scrollViewIndex) : null;
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+
+/**
+ * A view search compiled once per query. Every condition is encoded to UTF-8
+ * and its search mode is fixed when it is added, so a dumped line is matched
+ * on its bytes without re-parsing the query. All of the conditions must
+ * match. Visibility is resolved when a line is dumped, so it is checked first
+ * and views under an invisible ancestor are skipped without parsing them.
+ *
+ * A predicate without condition matches nothing, it is used by commands
+ * such as LIST which only need the dumped lines.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class ViewPredicate {
+    private ArrayList<Condition> mConditions  = new ArrayList<Condition>();
+    private boolean              mOnlyVisible = false;
+
+    private static class Condition {
+        private final String searchKey;
+        private final String searchValue;
+        private final int    searchMode;
+        private final byte[] key;
+        private final byte[] value;
+
+        private Condition(String searchKey, String searchValue, int searchMode) {
+            this.searchKey = searchKey;
+            this.searchValue = searchValue;
+            // class name is always complete matching
+            if ("name".equals(searchKey)) {
+                this.searchMode = ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING;
+            } else {
+                this.searchMode = searchMode;
+            }
+            this.key = ViewTree.toSearchKey(searchKey);
+            this.value = ViewTree.toBytes(searchValue);
+        }
+    }
+
+    /**
+     * @param onlyVisible
+     *            true if only views whose family are all visible match
+     */
+    ViewPredicate(boolean onlyVisible) {
+        mOnlyVisible = onlyVisible;
+    }
+
+    /**
+     * compile a single condition
+     *
+     * @param searchKey
+     *            property's name use to search, "name" means class name, ""
+     *            means no condition
+     * @param searchValue
+     *            property's value use to search
+     * @param searchMode
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_INCLUDE_MATCHING or
+     *            SEARCHMODE_PREFIX_MATCHING
+     * @param onlyVisible
+     *            true if only views whose family are all visible match
+     * @return the predicate
+     */
+    static ViewPredicate compile(String searchKey, String searchValue, int searchMode,
+            boolean onlyVisible) {
+        return new ViewPredicate(onlyVisible).and(searchKey, searchValue, searchMode);
+    }
+
+    /**
+     * compile all of the conditions of a query
+     *
+     * @param query
+     *            a valid query
+     * @return the predicate
+     */
+    static ViewPredicate compile(ViewQuery query) {
+        ViewPredicate predicate = compile(query.searchKey, query.searchValue, query.searchMode,
+                query.onlyVisible);
+        for (int i = 0; i < query.getAndCount(); i++) {
+            predicate.and(query.getAndKey(i), query.getAndValue(i), query.getAndMode(i));
+        }
+        return predicate;
+    }
+
+    /**
+     * add a condition which must match too
+     *
+     * @return this predicate
+     */
+    ViewPredicate and(String searchKey, String searchValue, int searchMode) {
+        if (searchKey != null && searchKey.length() != 0 && searchValue != null) {
+            mConditions.add(new Condition(searchKey, searchValue, searchMode));
+        }
+        return this;
+    }
+
+    /**
+     * @param viewTree
+     *            the view tree which the line belongs to
+     * @param index
+     *            index of the line
+     * @return true if the line matches all of the conditions
+     */
+    boolean matches(ViewTree viewTree, int index) {
+        return !mConditions.isEmpty() && matches(viewTree, index, 0);
+    }
+
+    /**
+     * search a dumped view tree by the index of the first condition
+     *
+     * @param viewTree
+     *            the view tree to be searched
+     * @param targetNumber
+     *            stop after targetNumber views are found
+     * @return indexes of the matched lines in dump order
+     */
+    ArrayList<Integer> find(ViewTree viewTree, int targetNumber) {
+        ArrayList<Integer> targetIndexes = new ArrayList<Integer>();
+        if (mConditions.isEmpty()) {
+            return targetIndexes;
+        }
+
+        Condition first = mConditions.get(0);
+        for (int i : viewTree.getIndex(first.searchKey).find(first.searchValue, first.searchMode)) {
+            if (matches(viewTree, i, 1)) {
+                targetIndexes.add(i);
+                if (targetIndexes.size() == targetNumber) {
+                    break;
+                }
+            }
+        }
+        return targetIndexes;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Condition condition : mConditions) {
+            if (builder.length() > 0) {
+                builder.append(" && ");
+            }
+            builder.append(condition.searchKey + " == " + condition.searchValue);
+        }
+        if (mOnlyVisible) {
+            builder.append(" && visible");
+        }
+        return builder.toString();
+    }
+
+    private boolean matches(ViewTree viewTree, int index, int from) {
+        if (mOnlyVisible && !viewTree.isFamilyVisible(index)) {
+            return false;
+        }
+        for (int i = from; i < mConditions.size(); i++) {
+            Condition condition = mConditions.get(i);
+            if (!viewTree.matches(index, condition.key, condition.value, condition.searchMode)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -16,14 +16,11 @@
 
 package com.baidu.cafe.remote;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Dump view property from view server. It works when "adb shell getprop
@@ -38,29 +35,36 @@ public class ViewPropertyProvider {
     public final static int           SEARCHMODE_COMPLETE_MATCHING = 1;
     public final static int           SEARCHMODE_DEFAULT           = 1;
     public final static int           SEARCHMODE_INCLUDE_MATCHING  = 2;
+    public final static int           SEARCHMODE_PREFIX_MATCHING   = 3;
 
-    private final static int          DUMP_TIMEOUT                 = 30000;
     private final static int          VIEWSERVER_PORT              = 4939;
 
+    private ViewServerConnectionPool  mConnectionPool              = null;
     private int                       mHeight                      = 0;
     private int                       mHeightOfStatusBar           = 0;
-    private BufferedReader            mIn                          = null;
-    private ArrayList<BufferedReader> mIns                         = null;
-    private ArrayList<String>         mDumpedLines                 = null;
-    private BufferedWriter            mOut                         = null;
     private int                       mRootHeight                  = 0;
     private String                    mRootLayoutType              = null;
     private String                    mRootLayoutWidth             = null;
     private int                       mRootWidth                   = 0;
-    private Socket                    mSocket                      = null;
     private SystemLib                 mSystemLib                   = null;
-    private ArrayList<Integer>        mTargetIndexes               = null;
-    private int                       mThreadNumber                = 0;
+    private ViewTree                  mViewTree                    = null;
+    private ViewTreeCache             mViewTreeCache               = null;
     private int                       mWidth                       = 0;
+    private WindowChangeWatcher       mWindowChangeWatcher         = null;
 
     public ViewPropertyProvider(SystemLib systemLib) {
+        this(systemLib, VIEWSERVER_PORT);
+    }
+
+    /**
+     * @param port
+     *            port of view server, a test gives the port of its own server
+     */
+    ViewPropertyProvider(SystemLib systemLib, int port) {
         mSystemLib = systemLib;
-        mIns = new ArrayList<BufferedReader>();
+        mConnectionPool = new ViewServerConnectionPool(port);
+        mViewTreeCache = new ViewTreeCache();
+        mWindowChangeWatcher = new WindowChangeWatcher(port);
         init();
         // for test git
     }
@@ -92,13 +96,13 @@ public class ViewPropertyProvider {
      * @return the name string of focused window
      */
     public String getFocusedWindow() {
-        dumpTargetViews("GET_FOCUS", "", "", SEARCHMODE_COMPLETE_MATCHING, 1, true, false);
+        dumpTargetViews("GET_FOCUS", new ViewPredicate(false), 1, true);
 
-        if (mDumpedLines.size() != 1) {
+        if (mViewTree.size() != 1) {
             return null;
         }
 
-        Log.print("GET_FOCUS:" + mDumpedLines.get(0));
+        Log.print("GET_FOCUS:" + mViewTree.getLine(0));
         /*
         String[] focusSplit = mKnownLines.get(0).split(" ");
         
@@ -108,7 +112,7 @@ public class ViewPropertyProvider {
         }*/
 
         //return focusSplit[1];
-        return mDumpedLines.get(0);
+        return mViewTree.getLine(0);
     }
 
     /**
@@ -123,13 +127,14 @@ public class ViewPropertyProvider {
             return false;
         }
 
-        ArrayList<String> targetLines = dumpTargetViews("DUMP " + processNumber, "layout_type",
-                "TYPE_INPUT_METHOD", SEARCHMODE_INCLUDE_MATCHING, 1, true, false);
-        if (null == targetLines || targetLines.size() == 0) {
+        ArrayList<Integer> targetIndexes = dumpTargetViews("DUMP " + processNumber,
+                ViewPredicate.compile("layout_type", "TYPE_INPUT_METHOD",
+                        SEARCHMODE_INCLUDE_MATCHING, false), 1, true);
+        if (null == targetIndexes || targetIndexes.size() == 0) {
             return false;
         }
 
-        return isVisible(targetLines.get(0));
+        return mViewTree.isVisible(targetIndexes.get(0));
     }
 
     /**
@@ -142,18 +147,19 @@ public class ViewPropertyProvider {
      */
     public boolean getStatusBarIconState(String slotName) {
         String processNumber = getProcessNumber("StatusBar");
-        ArrayList<String> targetLines = dumpTargetViews("DUMP " + processNumber, "name",
-                "StatusBarIconView", SEARCHMODE_COMPLETE_MATCHING, 20, true, false);
+        ArrayList<Integer> targetIndexes = dumpTargetViews("DUMP " + processNumber,
+                ViewPredicate.compile("name", "StatusBarIconView", SEARCHMODE_COMPLETE_MATCHING,
+                        false), 20, true);
 
-        for (String targetLine : targetLines) {
-            String sName = getPropertyValue(targetLine, "mSlot");
+        for (int targetIndex : targetIndexes) {
+            String sName = mViewTree.getPropertyValue(targetIndex, "mSlot");
             // Log.print("sName:" + sName);
             if (null == sName) {
                 continue;
             }
 
             if (sName.contains(slotName)) {
-                return isVisible(targetLine);
+                return mViewTree.isVisible(targetIndex);
             }
         }
         Log.print("iconName[" + slotName + "] has not found!");
@@ -196,7 +202,7 @@ public class ViewPropertyProvider {
      *            key value to be dumped
      * @param searchMode
      *            dumping mode including SEARCHMODE_INCLUDE_MATCHING,
-     *            SEARCHMODE_COMPLETE_MATCHING
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_PREFIX_MATCHING
      * @param targetNumber
      *            the amount of views you wanna to dump
      * @param getKeys
@@ -219,252 +225,217 @@ public class ViewPropertyProvider {
 
         // get target lines
         // Log.print("searchKey:" + searchKey + "\nsearchValue:" + searchValue + "\ntargetNumber:" + targetNumber);
-        ArrayList<String> targetLines = dumpTargetViews("DUMP -1", searchKey, searchValue,
-                searchMode, targetNumber, getNew, onlyVisible);
-        for (String line : targetLines) {
-            Log.print("target line:" + line);
+        ArrayList<Integer> targetIndexes = dumpFocusedWindow(ViewPredicate.compile(searchKey,
+                searchValue, searchMode, onlyVisible), targetNumber, getNew);
+
+        // keep it, because dumping for coordinates may replace the field
+        ViewTree viewTree = mViewTree;
+        for (int targetIndex : targetIndexes) {
+            Log.print("target line:" + viewTree.getLine(targetIndex));
         }
 
         // get properties
         ArrayList<String[]> targets = new ArrayList<String[]>();
 
-        for (int i = 0; i < targetLines.size(); i++) {
-            String[] properties = new String[getKeys.length];
-            for (int j = 0; j < getKeys.length; j++) {
-                if (getKeys[j].equals("coordinate")) {
-                    properties[j] = getAbsoluteCoordinates(mTargetIndexes.get(i));
-                    // Log.print(properties[j]);
-                    continue;
-                }
-                properties[j] = getPropertyValue(targetLines.get(i), getKeys[j]);
-            }
-
+        for (int targetIndex : targetIndexes) {
+            String[] properties = getProperties(viewTree, targetIndex, getKeys);
             targets.add(properties);
 
             //            for (String property : properties) {
             //                Log.print(property);
             //            }
         }
+        mViewTree = viewTree;
 
         return targets;
     }
 
     /**
-     * get the current window list
+     * Answer several queries of the focused window by one dump. The dump stops
+     * as soon as all of the queries have found their target views.
      * 
-     * @return the current window list
-     */
-    public String[] getWindowList() {
-        dumpTargetViews("LIST", "", "", SEARCHMODE_COMPLETE_MATCHING, 1, true, false);
-        return mDumpedLines.toArray(new String[mDumpedLines.size()]);
-    }
-
-    /**
-     * wait for all dumping in threads completing It only can be invoked once in
-     * a process!
+     * @param queries
+     *            views to be searched
+     * @param getNew
+     *            True means start a new dump. False means get properties from
+     *            last dump.
+     * @return properties of the targetNumber-th view of each query in the
+     *         order of queries, null for a query whose view is not found
      */
-    public void waitForAllDumpCompleted() {
-        Log.print("Wait for all dumping...");
-        String line;
-        Long begin = System.currentTimeMillis();
-        Boolean isTimeout = false;
-
-        for (BufferedReader in : mIns) {
-            if (isTimeout) {
-                // tolerate 30s dump, and then it will exit that will cause socket exception in logcat at w level
-                break;
-            }
-
-            if (null == in) {
-                continue;
-            }
+    public ViewQueryResult getViewPropertiesBatch(List<ViewQuery> queries, boolean getNew) {
+        ViewQueryResult result = new ViewQueryResult();
+        if (null == queries) {
+            Log.print("getViewPropertiesBatch()'s arguments is not correct!");
+            return result;
+        }
 
-            try {
-                while (true) {
-                    if (System.currentTimeMillis() - begin > DUMP_TIMEOUT) {
-                        isTimeout = true;
-                        Log.print("Dump time is over than DUMP_TIMEOUT!\nSocket to ViewServer will be closed And it will throw [java.net.SocketException: Broken pipe].");
-                        break;
-                    }
+        setCurrentXY();
 
-                    if ((line = in.readLine()) == null || "DONE.".equalsIgnoreCase(line)
-                            || "DONE".equalsIgnoreCase(line)) {
-                        //Log.print("break@wait:" + line);
-                        break;
-                    }
-                    //Log.print("wait:" + line);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+        // compile every query once, null for an invalid query
+        ArrayList<ViewPredicate> predicates = new ArrayList<ViewPredicate>();
+        ArrayList<ViewPredicate> validPredicates = new ArrayList<ViewPredicate>();
+        ArrayList<Integer> targetNumbers = new ArrayList<Integer>();
+        for (ViewQuery query : queries) {
+            ViewPredicate predicate = isValid(query) ? ViewPredicate.compile(query) : null;
+            predicates.add(predicate);
+            if (predicate != null) {
+                validPredicates.add(predicate);
+                targetNumbers.add(query.targetNumber);
             }
-            /*
-               try {
-               in.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            */
         }
+        ViewTree viewTree = dumpFocusedWindow(validPredicates, targetNumbers, getNew);
 
-        try {
-            /*
-            if (mOut != null) {
-                mOut.close();
-            }
-            
-            if (mIn != null) {
-                mIn.close();
+        for (int i = 0; i < queries.size(); i++) {
+            ViewQuery query = queries.get(i);
+            ArrayList<Integer> targetIndexes = null;
+            if (predicates.get(i) != null && viewTree != null) {
+                mViewTree = viewTree;
+                targetIndexes = searchDumpedLines(predicates.get(i), query.targetNumber);
             }
-            */
-            if (mSocket != null) {
-                mSocket.close();
+            if (null == targetIndexes || targetIndexes.size() < query.targetNumber) {
+                Log.print("query [" + query + "] has not found!");
+                result.add(null);
+                continue;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+            result.add(getProperties(viewTree, targetIndexes.get(query.targetNumber - 1),
+                    query.getKeys));
         }
+        mViewTree = viewTree;
 
-        Log.print("All dump has completed. It cost " + (System.currentTimeMillis() - begin) + "ms");
+        return result;
     }
 
     /**
-     * format the dumped tree lines to its level
+     * Set how long a dump of the focused window can be reused. A cached dump
+     * is dropped at once when the focused window changes or an input event is
+     * injected.
      * 
-     * @param lines
-     *            the dumped tree lines
-     * @return the dumped tree level such as 0.1.3.4
-     */
-    private String[] formatDumpedLevels(ArrayList<String> lines) {
-        String[] newLines = new String[lines.size()];
-
-        // change the first line
-        String levelString = "0";
-        newLines[0] = levelString;
-
-        // change other lines
-        for (int i = 1; i < lines.size(); i++) {
-            // select current head from head
-            StringBuffer levelBuf = new StringBuffer();
-            String[] levelSplit = levelString.split("\\.");
-            int level = countFrontWhitespace(lines.get(i));
-            for (int j = 0; j < level; j++) {
-                levelBuf.append(levelSplit[j]).append('.');
-            }
-            String currentLevel = levelBuf.toString();
-            levelString = currentLevel + i;
-            newLines[i] = levelString;
-            // Log.print(newLines[i]);
-        }
+     * @param maxAge
+     *            max age in ms, 0 means always dump from view server, which
+     *            is the default
+     */
+    public void setDumpCacheMaxAge(long maxAge) {
+        mViewTreeCache.setMaxAge(maxAge);
+    }
 
-        return newLines;
+    /**
+     * Drop the cached dump. It should be invoked after anything that may
+     * change UI, such as injecting input events.
+     */
+    public void invalidateDumpCache() {
+        mViewTreeCache.invalidate();
     }
 
     /**
-     * open a new thread to complete remaining dumping job.
+     * @return the number of window list or focus changes seen so far, used
+     *         by waitForWindowChange()
      */
-    private void completeRemainingDump() {
-        final int index = mThreadNumber;
-        new Thread(new Runnable() {
-            public void run() {
-                BufferedReader in = mIns.get(index);
-                String line;
-                try {
-                    while (true) {
-                        if ((line = in.readLine()) == null || "DONE.".equalsIgnoreCase(line)
-                                || "DONE".equalsIgnoreCase(line)) {
-                            // Log.print("break:" + line);
-                            break;
-                        }
-                        // Log.print(line);
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-        }, "completeRemainingDump").start();
-        mThreadNumber++;
+    public long getWindowChangeCount() {
+        return mWindowChangeWatcher.getChangeCount();
     }
 
     /**
-     * count the number of the white space of the given line
+     * Block until the window list or focus changes after changeCount was
+     * got. Changes inside a window are not signaled, so callers should query
+     * again after timeout too.
      * 
-     * @param line
-     *            the dumped line to be searched
-     * @return the number of the white space
+     * @param changeCount
+     *            returned by getWindowChangeCount() before the last query
+     * @param timeout
+     *            max time to wait in ms
+     * @return true if windows changed, false if timeout
      */
-    private int countFrontWhitespace(String line) {
-        int count = 0;
-        while (line.charAt(count) == ' ') {
-            count++;
-        }
-        return count;
+    public boolean waitForWindowChange(long changeCount, long timeout) {
+        return mWindowChangeWatcher.waitForChange(changeCount, timeout);
     }
 
     /**
-     * search the given line according to given key, value and mode.
+     * get the current window list
      * 
-     * @param searchKey
-     *            key property to be dumped
-     * @param searchValue
-     *            key value to be dumped
-     * @param searchMode
-     *            dumping mode including SEARCHMODE_PARTIAL_MATCHING,
-     *            SEARCHMODE_COMPLETE_MATCHING
-     * @param line
-     *            the dumped line to be searched
-     * @return if found, return true; else false
-     */
-    private boolean findTarget(String searchKey, String searchValue, int searchMode, String line) {
-        if ("name".equals(searchKey)) {
-            if (searchValue.equals(getName(line))) {
-                return true;
+     * @return the current window list
+     */
+    public String[] getWindowList() {
+        dumpTargetViews("LIST", new ViewPredicate(false), 1, true);
+        return mViewTree.getLines().toArray(new String[mViewTree.size()]);
+    }
+
+    /**
+     * Close all of the sockets to view server. Incomplete dumps have been
+     * aborted when they were given up, so there is nothing to wait for.
+     */
+    public void waitForAllDumpCompleted() {
+        mConnectionPool.closeAll();
+        mWindowChangeWatcher.stop();
+        Log.print("All dump has completed. " + mConnectionPool.getStatistics());
+    }
+
+    /**
+     * @return the timings of connecting and dumping view server, and the
+     *         number of aborted dumps
+     */
+    public String getViewServerStatistics() {
+        return mConnectionPool.getStatistics();
+    }
+
+    /**
+     * @param viewTree
+     *            the view tree which the view belongs to
+     * @param viewIndex
+     *            index of the view in the view tree
+     * @param getKeys
+     *            property's name use to get, "coordinate" means absolute
+     *            coordinates, "childCount" means the number of children
+     * @return values of getKeys
+     */
+    private String[] getProperties(ViewTree viewTree, int viewIndex, String[] getKeys) {
+        String[] properties = new String[getKeys.length];
+        for (int j = 0; j < getKeys.length; j++) {
+            if (getKeys[j].equals("coordinate")) {
+                properties[j] = getAbsoluteCoordinates(viewTree, viewIndex);
+                // Log.print(properties[j]);
+                continue;
             }
-        } else {
-            String getValue = getPropertyValue(line, searchKey);
-            if (null == getValue) {
-                return false;
+            if (getKeys[j].equals("childCount")) {
+                properties[j] = String.valueOf(viewTree.getChildCount(viewIndex));
+                continue;
             }
-            return isMatch(searchValue, getValue, searchMode);
+            properties[j] = viewTree.getPropertyValue(viewIndex, getKeys[j]);
         }
+        return properties;
+    }
 
-        return false;
+    private static boolean isValid(ViewQuery query) {
+        return query != null && query.searchKey != null && !query.searchKey.equals("")
+                && query.searchValue != null && query.getKeys != null && query.targetNumber >= 1;
     }
 
-    private String getAbsoluteCoordinates(int viewIndex) {
-        String[] newLines = formatDumpedLevels(mDumpedLines);
-        int[] relativeCoordinates = new int[4];
-        int x = 0;
-        int y = 0;
-
-        String[] fathersLevel = newLines[viewIndex].split("\\.");
-        for (int j = 0; j < fathersLevel.length; j++) {
-            // Log.print("at level " + new Integer(fathersLevel[j]));
-            relativeCoordinates = getRelativeCoordinates(mDumpedLines.get(
-                    new Integer(fathersLevel[j])).trim());
-
-            // accumulate relative coordinates
-            if (relativeCoordinates != null) {
-                // x += left - mScrollX
-                x += relativeCoordinates[0] - relativeCoordinates[2];
-                // y += top - mScrollY
-                y += relativeCoordinates[1] - relativeCoordinates[3];
-            }
+    /**
+     * get the absolute coordinates of the given view by accumulating the
+     * relative coordinates of its ancestors in the view tree
+     * 
+     * @param viewTree
+     *            the view tree which the view belongs to
+     * @param viewIndex
+     *            index of the view in the view tree
+     * @return "x,y,width,height" or null if the view has no coordinates
+     */
+    private String getAbsoluteCoordinates(ViewTree viewTree, int viewIndex) {
+        int[] relativeCoordinates = viewTree.getRelativeCoordinates(viewIndex);
+        if (null == relativeCoordinates) {
+            return null;
         }
-        x += relativeCoordinates[2];
-        y += relativeCoordinates[3];
 
-        String widthString = getPropertyValue(
-                mDumpedLines.get(new Integer(fathersLevel[fathersLevel.length - 1])).trim(),
-                "getWidth()");
-        String heightString = getPropertyValue(
-                mDumpedLines.get(new Integer(fathersLevel[fathersLevel.length - 1])).trim(),
-                "getHeight()");
-        if (heightString == null || widthString == null) {
+        // the offset of the view itself excludes its own scroll
+        int x = viewTree.getOffsetX(viewIndex) + relativeCoordinates[2];
+        int y = viewTree.getOffsetY(viewIndex) + relativeCoordinates[3];
+
+        int width = viewTree.getIntPropertyValue(viewIndex, "getWidth()", -1);
+        int height = viewTree.getIntPropertyValue(viewIndex, "getHeight()", -1);
+        if (height < 0 || width < 0) {
             return null;
         }
-        int width = new Integer(widthString);
-        int height = new Integer(heightString);
 
-        parseRoot();
+        parseRoot(viewTree);
 
         Log.print("[mRootHeight,mRootWidth]:[" + mRootHeight + "," + mRootWidth + "]");
         /*
@@ -516,10 +487,11 @@ public class ViewPropertyProvider {
         String processNumber = getProcessNumber("InputMethod");
 
         if (processNumber != null) {
-            ArrayList<String> targetLines = dumpTargetViews("DUMP " + processNumber, "layout_type",
-                    "TYPE_INPUT_METHOD", SEARCHMODE_INCLUDE_MATCHING, 1, true, false);
-            int heightOfInputMethod = Integer.valueOf(getPropertyValue(targetLines.get(0),
-                    "getHeight()"));
+            ArrayList<Integer> targetIndexes = dumpTargetViews("DUMP " + processNumber,
+                    ViewPredicate.compile("layout_type", "TYPE_INPUT_METHOD",
+                            SEARCHMODE_INCLUDE_MATCHING, false), 1, true);
+            int heightOfInputMethod = targetIndexes.size() == 0 ? 0 : mViewTree
+                    .getIntPropertyValue(targetIndexes.get(0), "getHeight()", 0);
             if (heightOfInputMethod > 0) {
                 mSystemLib.setSystemProperties("persist.sys.inputmethod.h", ""
                         + heightOfInputMethod);
@@ -530,58 +502,26 @@ public class ViewPropertyProvider {
         return 0;
     }
 
-    private int getLengthNumberWidth(String line, int beginIndex) {
-        int length = 0;
-        for (int i = 0; i < line.length(); i++) {
-            if (line.substring(beginIndex + i, beginIndex + i + 1).equals(",")) {
-                length = i;
-                break;
-            }
-        }
-        return length;
-    }
-
     /**
-     * search views from dumped lines according to key, value and search mode.
+     * search views from the last dump by the given predicate
      * 
-     * @param searchKey
-     *            key property to be dumped
-     * @param searchValue
-     *            key value to be dumped
-     * @param searchMode
-     *            dumping mode including SEARCHMODE_INCLUDE_MATCHING,
-     *            SEARCHMODE_COMPLETE_MATCHING
+     * @param predicate
+     *            the compiled query
      * @param targetNumber
-     * @param onlyVisible
-     * @return lines which are selected
+     *            stop after targetNumber views are found
+     * @return indexes of the lines which are selected
      */
-    private ArrayList<String> searchDumpedLines(String searchKey, String searchValue,
-            int searchMode, int targetNumber, boolean onlyVisible) {
-        ArrayList<String> targetLines = new ArrayList<String>();
-        if (null == mDumpedLines || mDumpedLines.size() == 0) {
-            Log.print("mDupmedLines is empty!\nThere is no dump to find.");
+    private ArrayList<Integer> searchDumpedLines(ViewPredicate predicate, int targetNumber) {
+        if (null == mViewTree || mViewTree.size() == 0) {
+            Log.print("mViewTree is empty!\nThere is no dump to find.");
             return null;
         }
 
-        for (int i = 0; i < mDumpedLines.size(); i++) {
-            String line = mDumpedLines.get(i);
-            if (findTarget(searchKey, searchValue, searchMode, line)) {
-                if (onlyVisible && !isFamilyVisible(i)) {
-                    Log.print("invisible line: " + line);
-                    continue;
-                }
-
-                Log.print("old: " + searchKey + " == " + searchValue + " at [" + line + "]");
-                targetLines.add(line);
-                mTargetIndexes.add(i);
-
-                if (targetLines.size() == targetNumber) {
-                    break;
-                }
-            }
+        ArrayList<Integer> targetIndexes = predicate.find(mViewTree, targetNumber);
+        for (int i : targetIndexes) {
+            Log.print("old: " + predicate + " at [" + mViewTree.getLine(i) + "]");
         }
-
-        return targetLines;
+        return targetIndexes;
     }
 
     public static boolean isViewServerOpen() {
@@ -607,123 +547,80 @@ public class ViewPropertyProvider {
      * @return
      */
     public ArrayList<String> dumpAllLines() {
-        ArrayList<String> lines = new ArrayList<String>();
+        ViewTree viewTree = new ViewTree();
         Long begin = System.currentTimeMillis();
+        ViewServerConnectionPool.Connection connection = null;
+        boolean isCompleted = false;
         try {
-            mSocket = new Socket();
-            mSocket.connect(new InetSocketAddress("127.0.0.1", VIEWSERVER_PORT));
-            mOut = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
-            mIn = new BufferedReader(new InputStreamReader(mSocket.getInputStream(), "utf-8"));
-
-            // send command
-            mOut.write("DUMP -1");
-            mOut.newLine();
-            mOut.flush();
+            connection = mConnectionPool.open("DUMP -1");
 
             while (true) {
-                String line = null;
-                if ((line = mIn.readLine()) == null || "DONE.".equalsIgnoreCase(line)) {
+                if (!connection.readLine()) {
+                    isCompleted = true;
                     break;
                 }
-                lines.add(line);
-                //                Log.print(line);
+                viewTree.add(connection.getLine(), 0, connection.getLineLength());
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            mConnectionPool.release(connection, isCompleted);
         }
         Log.print("Dump time cost: " + (System.currentTimeMillis() - begin) + "ms");
-        return lines;
+        return viewTree.getLines();
     }
 
     /**
-     * dump lines from view server by the given dumping command
+     * dump lines from view server by the given dumping command, the
+     * predicate is evaluated on every line while it streams
      * 
      * @param command
      *            the dumping command
-     * @param searchKey
-     *            key property to be dumped
-     * @param searchValue
-     *            key value to be dumped
-     * @param searchMode
-     *            the dumping mode including SEARCHMODE_INCLUDE_MATCHING,
-     *            SEARCHMODE_COMPLETE_MATCHING
+     * @param predicate
+     *            the compiled query
      * @param targetNumber
-     * @param onlyVisible
-     * @return the lines dumped
+     *            stop dumping after targetNumber views are found
+     * @return indexes of the lines dumped
      */
-    private ArrayList<String> dumpLinesFromViewServer(String command, String searchKey,
-            String searchValue, int searchMode, int targetNumber, boolean onlyVisible) {
+    private ArrayList<Integer> dumpLinesFromViewServer(String command, ViewPredicate predicate,
+            int targetNumber) {
         // init
-        mDumpedLines = new ArrayList<String>();
-        ArrayList<String> targetLines = new ArrayList<String>();
+        mViewTree = new ViewTree();
+        ArrayList<Integer> targetIndexes = new ArrayList<Integer>();
         boolean isCompleted = false;
+        ViewServerConnectionPool.Connection connection = null;
 
         try {
-            mSocket = new Socket();
-            mSocket.connect(new InetSocketAddress("127.0.0.1", VIEWSERVER_PORT));
-            mOut = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
-            mIn = new BufferedReader(new InputStreamReader(mSocket.getInputStream(), "utf-8"));
-
-            // send command
-            mOut.write(command);
-            mOut.newLine();
-            mOut.flush();
+            connection = mConnectionPool.open(command);
 
             Long begin = System.currentTimeMillis();
             while (true) {
-                String line;
-
-                if ((line = mIn.readLine()) == null || "DONE.".equalsIgnoreCase(line)) {
+                if (!connection.readLine()) {
                     isCompleted = true;
+                    mViewTree.setComplete();
                     break;
                 }
 
-                //Log.print(line);
-                mDumpedLines.add(line);
-                int viewIndex = Integer.valueOf(mDumpedLines.size() - 1);
-                // got targets already
-                if (findTarget(searchKey, searchValue, searchMode, line)) {
-                    if (onlyVisible && !isFamilyVisible(viewIndex)) {
-                        Log.print("invisible line: " + line);
-                        continue;
-                    }
-
-                    Log.print("new: " + searchKey + " == " + searchValue + " at [" + line + "]");
-                    targetLines.add(line);
-                    mTargetIndexes.add(viewIndex);
+                int viewIndex = mViewTree.add(connection.getLine(), 0, connection.getLineLength());
+                if (predicate.matches(mViewTree, viewIndex)) {
+                    Log.print("new: " + predicate + " at [" + mViewTree.getLine(viewIndex) + "]");
+                    targetIndexes.add(viewIndex);
 
-                    if (targetLines.size() == targetNumber) {
+                    // got targets already
+                    if (targetIndexes.size() == targetNumber) {
                         break;
                     }
                 }
             }
 
-            if (!isCompleted) {
-                // save socket
-                mIns.add(mIn);
-                completeRemainingDump();
-            }
-
             Log.print("Dump time cost: " + (System.currentTimeMillis() - begin) + "ms");
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            // abort the remaining dump if targets have been found
+            mConnectionPool.release(connection, isCompleted);
         }
-        return targetLines;
-    }
-
-    /**
-     * get last property from dumped line e.g.
-     * com.android.calculator2.ColorButton@43e49bf8, then ColorButtor will be
-     * returned
-     * 
-     * @param line
-     *            the dumped line to be searched
-     * @return the last property
-     */
-    private String getName(String line) {
-        String fullName = line.substring(0, line.indexOf("@"));
-        String[] names = fullName.split("\\.");
-        return names[names.length - 1];
+        return targetIndexes;
     }
 
     private int getNonFullScreenWindowHeightOffset() {
@@ -775,6 +672,55 @@ public class ViewPropertyProvider {
         return heightOffset;
     }
 
+    /**
+     * dump lines from view server into mViewTree until every predicate has
+     * matched its target number of views
+     * 
+     * @param command
+     *            the dumping command
+     * @param predicates
+     *            the compiled queries
+     * @param targetNumbers
+     *            target number of each predicate
+     */
+    private void dumpLinesFromViewServer(String command, ArrayList<ViewPredicate> predicates,
+            ArrayList<Integer> targetNumbers) {
+        mViewTree = new ViewTree();
+        int size = predicates.size();
+        int[] counts = new int[size];
+        int remaining = size;
+        boolean isCompleted = false;
+        ViewServerConnectionPool.Connection connection = null;
+        try {
+            connection = mConnectionPool.open(command);
+
+            Long begin = System.currentTimeMillis();
+            while (remaining > 0) {
+                if (!connection.readLine()) {
+                    isCompleted = true;
+                    mViewTree.setComplete();
+                    break;
+                }
+
+                int viewIndex = mViewTree.add(connection.getLine(), 0, connection.getLineLength());
+                for (int i = 0; i < size; i++) {
+                    if (counts[i] < targetNumbers.get(i)
+                            && predicates.get(i).matches(mViewTree, viewIndex)
+                            && ++counts[i] == targetNumbers.get(i)) {
+                        remaining--;
+                    }
+                }
+            }
+
+            Log.print("Dump time cost: " + (System.currentTimeMillis() - begin) + "ms");
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            // abort the remaining dump if all of the targets have been found
+            mConnectionPool.release(connection, isCompleted);
+        }
+    }
+
     /**
      * get the process number by the given process name
      * 
@@ -783,8 +729,8 @@ public class ViewPropertyProvider {
      * @return the process number
      */
     private String getProcessNumber(String processName) {
-        dumpTargetViews("LIST", "", "", SEARCHMODE_COMPLETE_MATCHING, 1, true, false);
-        for (String line : mDumpedLines) {
+        dumpTargetViews("LIST", new ViewPredicate(false), 1, true);
+        for (String line : mViewTree.getLines()) {
             String[] lineSplit = line.split(" ");
             if (null == lineSplit || lineSplit.length < 2) {
                 Log.print("null == lineSplit || lineSplit.length < 2");
@@ -798,67 +744,111 @@ public class ViewPropertyProvider {
     }
 
     /**
-     * get the value from the given line according to the given key
+     * Dump target views of the focused window. A fresh dump of the same window
+     * is reused if no input event has been injected since it, and a dump that
+     * stopped early still answers queries whose targets are all in it.
      * 
-     * @param searchKey
-     *            key property to be dumped
-     * @param line
-     *            the dumped line to be searched
-     * @return the matched value
+     * @param predicate
+     *            the compiled query
+     * @param targetNumber
+     *            the amount of views you wanna to dump
+     * @param getNew
+     *            true if the view is already dumped, else false
+     * @return indexes of the target views in mViewTree
      */
-    private String getPropertyValue(String line, String searchKey) {
-        try {
-            if (searchKey.length() != 0 && line.indexOf(searchKey + "=") != -1) {
-                int beginIndex = line.indexOf(searchKey) + searchKey.length() + 1;
-                int endIndex = beginIndex + getLengthNumberWidth(line, beginIndex);
-                int length = new Integer(line.substring(beginIndex, endIndex));
-                beginIndex = endIndex + 1;
-                endIndex = beginIndex + length;
-                return line.substring(beginIndex, endIndex);
+    private ArrayList<Integer> dumpFocusedWindow(ViewPredicate predicate, int targetNumber,
+            boolean getNew) {
+        if (!getNew || !mViewTreeCache.isEnabled()) {
+            return dumpTargetViews("DUMP -1", predicate, targetNumber, getNew);
+        }
+
+        int generation = mViewTreeCache.getGeneration();
+        long dumpTime = System.currentTimeMillis();
+        String window = getFocusedWindow();
+        ViewTree cachedTree = mViewTreeCache.get(window);
+        if (cachedTree != null) {
+            mViewTree = cachedTree;
+            ArrayList<Integer> targetIndexes = dumpTargetViews("DUMP -1", predicate,
+                    targetNumber, false);
+            if (targetIndexes != null
+                    && (targetIndexes.size() == targetNumber || cachedTree.isComplete())) {
+                Log.print("reuse dump of " + window);
+                return targetIndexes;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        // Log.print(property + " has not be found at " + line);
-        return null;
+
+        ArrayList<Integer> targetIndexes = dumpTargetViews(getDumpCommand(window), predicate,
+                targetNumber, true);
+        mViewTreeCache.put(window, generation, dumpTime, mViewTree);
+        return targetIndexes;
     }
 
     /**
-     * get the relative coordinates of the given line
+     * Dump the focused window until all of the predicates have found their
+     * target views, or reuse a fresh dump which can answer all of them.
      * 
-     * @param line
-     *            the line to be calculated
-     * @return the relative coordinates
+     * @param predicates
+     *            the compiled queries
+     * @param targetNumbers
+     *            target number of each predicate
+     * @param getNew
+     *            false means use the last dump
+     * @return the view tree to answer the queries
      */
-    private int[] getRelativeCoordinates(String line) {
-        String property = null;
-        int[] relativeCoordinates = new int[4];
-
-        property = getPropertyValue(line, "mLeft");
-        if (property == null) {
-            return null;
-        }
-        relativeCoordinates[0] = new Integer(property);
-
-        property = getPropertyValue(line, "mTop");
-        if (property == null) {
-            return null;
-        }
-        relativeCoordinates[1] = new Integer(property);
-
-        property = getPropertyValue(line, "mScrollX");
-        if (property == null) {
-            return null;
+    private ViewTree dumpFocusedWindow(ArrayList<ViewPredicate> predicates,
+            ArrayList<Integer> targetNumbers, boolean getNew) {
+        if (!getNew || predicates.isEmpty()) {
+            return mViewTree;
+        }
+        if (!mViewTreeCache.isEnabled()) {
+            dumpLinesFromViewServer("DUMP -1", predicates, targetNumbers);
+            return mViewTree;
+        }
+
+        int generation = mViewTreeCache.getGeneration();
+        long dumpTime = System.currentTimeMillis();
+        String window = getFocusedWindow();
+        ViewTree cachedTree = mViewTreeCache.get(window);
+        if (cachedTree != null
+                && (cachedTree.isComplete() || hasAllTargets(cachedTree, predicates,
+                        targetNumbers))) {
+            Log.print("reuse dump of " + window);
+            mViewTree = cachedTree;
+            return cachedTree;
+        }
+
+        dumpLinesFromViewServer(getDumpCommand(window), predicates, targetNumbers);
+        mViewTreeCache.put(window, generation, dumpTime, mViewTree);
+        return mViewTree;
+    }
+
+    private static boolean hasAllTargets(ViewTree viewTree, ArrayList<ViewPredicate> predicates,
+            ArrayList<Integer> targetNumbers) {
+        for (int i = 0; i < predicates.size(); i++) {
+            if (predicates.get(i).find(viewTree, targetNumbers.get(i)).size() < targetNumbers
+                    .get(i)) {
+                return false;
+            }
         }
-        relativeCoordinates[2] = new Integer(property);
+        return true;
+    }
 
-        property = getPropertyValue(line, "mScrollY");
-        if (property == null) {
-            return null;
+    /**
+     * Dump the focused window by its hash code instead of "DUMP -1", so that
+     * the dump always belongs to the window which the cache is keyed by, even
+     * if focus changes between GET_FOCUS and DUMP.
+     * 
+     * @param focusedWindow
+     *            the line returned by GET_FOCUS, such as
+     *            "43e49bf8 com.android.calculator2/com.android.calculator2.Calculator"
+     * @return the dump command of the window
+     */
+    private static String getDumpCommand(String focusedWindow) {
+        if (null == focusedWindow || focusedWindow.length() == 0) {
+            return "DUMP -1";
         }
-        relativeCoordinates[3] = new Integer(property);
-
-        return relativeCoordinates;
+        int end = focusedWindow.indexOf(' ');
+        return "DUMP " + (end == -1 ? focusedWindow : focusedWindow.substring(0, end));
     }
 
     /**
@@ -867,33 +857,22 @@ public class ViewPropertyProvider {
      * 
      * @param command
      *            dumping command
-     * @param searchKey
-     *            key property to be dumped
-     * @param searchValue
-     *            key value to be dumped
-     * @param searchMode
-     *            dumping mode including SEARCHMODE_INCLUDE_MATCHING,
-     *            SEARCHMODE_COMPLETE_MATCHING
+     * @param predicate
+     *            the compiled query
      * @param targetNumber
      *            the amount of views you wanna to dump
      * @param getNew
      *            true if the view is already dumped, else false
-     * @param onlyVisible
-     *            true if u just wanna dump visible views
-     * @return all of dumped views
+     * @return indexes of the target views in mViewTree
      */
-    private ArrayList<String> dumpTargetViews(final String command, final String searchKey,
-            final String searchValue, final int searchMode, final int targetNumber,
-            final boolean getNew, final boolean onlyVisible) {
-        mTargetIndexes = new ArrayList<Integer>();
-
+    private ArrayList<Integer> dumpTargetViews(final String command,
+            final ViewPredicate predicate, final int targetNumber, final boolean getNew) {
         // getViewLines from dumped lines
         if (!getNew) {
-            return searchDumpedLines(searchKey, searchValue, searchMode, targetNumber, onlyVisible);
+            return searchDumpedLines(predicate, targetNumber);
         }
 
-        return dumpLinesFromViewServer(command, searchKey, searchValue, searchMode, targetNumber,
-                onlyVisible);
+        return dumpLinesFromViewServer(command, predicate, targetNumber);
     }
 
     /**
@@ -931,27 +910,6 @@ public class ViewPropertyProvider {
         return heightOfInputMethod;
     }
 
-    /**
-     * adjust whether the family is visible of the dumped tree lines
-     * 
-     * @param viewIndex
-     *            the index to get father level
-     * @return true if family is visible, else false
-     */
-    private boolean isFamilyVisible(int viewIndex) {
-        String[] dumpedLevels = formatDumpedLevels(mDumpedLines);
-        String[] fathersLevel = dumpedLevels[viewIndex].split("\\.");
-
-        for (int j = 0; j < fathersLevel.length; j++) {
-            String fatherLine = mDumpedLines.get(new Integer(fathersLevel[j])).trim();
-            if (!isVisible(fatherLine)) {
-                return false;
-            }
-        }
-
-        return true;
-    }
-
     /**
      * adjust if the screen is full
      * 
@@ -973,12 +931,14 @@ public class ViewPropertyProvider {
      *            SEARCHMODE_COMPLETE_MATCHING
      * @return true if matched, else false
      */
-    private boolean isMatch(String searchValue, String getValue, int searchMode) {
+    static boolean isMatch(String searchValue, String getValue, int searchMode) {
         switch (searchMode) {
         case SEARCHMODE_COMPLETE_MATCHING:
             return searchValue.equals(getValue) ? true : false;
         case SEARCHMODE_INCLUDE_MATCHING:
             return getValue.indexOf(searchValue) != -1 ? true : false;
+        case SEARCHMODE_PREFIX_MATCHING:
+            return getValue.startsWith(searchValue);
         default:
             Log.print("Unknown type of SEARCHMODE");
             return false;
@@ -991,27 +951,15 @@ public class ViewPropertyProvider {
         return mHeight > mWidth;
     }
 
-    /**
-     * adjust whether the given line is visible
-     * 
-     * @param line
-     *            the dumped line to be searched
-     * @return true if visible, else false
-     */
-    private boolean isVisible(String line) {
-        return "VISIBLE".equals(getPropertyValue(line, "getVisibility()")) ? true : false;
-    }
-
     /**
      * parse root dumped line including its height, width, layout type and
      * layout width.
      */
-    private void parseRoot() {
-        String rootView = mDumpedLines.get(0);
-        mRootHeight = Integer.valueOf(getPropertyValue(rootView, "getHeight()"));
-        mRootWidth = Integer.valueOf(getPropertyValue(rootView, "getWidth()"));
-        mRootLayoutType = getPropertyValue(rootView, "layout_type");
-        mRootLayoutWidth = getPropertyValue(rootView, "layout_width");
+    private void parseRoot(ViewTree viewTree) {
+        mRootHeight = viewTree.getIntPropertyValue(0, "getHeight()", 0);
+        mRootWidth = viewTree.getIntPropertyValue(0, "getWidth()", 0);
+        mRootLayoutType = viewTree.getPropertyValue(0, "layout_type");
+        mRootLayoutWidth = viewTree.getPropertyValue(0, "layout_width");
         Log.print("layoutType:" + mRootLayoutType);
         Log.print("mRootLayoutWidth:" + mRootLayoutWidth);
     }
@@ -0,0 +1,421 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedList;
+
+/**
+ * Keeps a small pool of connected sockets to view server.
+ *
+ * View server serves exactly one command per connection and closes it
+ * afterwards, so a socket can not be reused after its command. Instead one
+ * filler thread of the pool connects a spare socket after each query, so the
+ * next query does not pay the connect cost. A stream which is no longer needed is
+ * aborted by resetting its socket instead of being drained by another thread.
+ *
+ * Every spare socket occupies one worker of view server, so the pool must
+ * stay small and a spare socket is closed soon if no query comes.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class ViewServerConnectionPool {
+    private final static String     VIEWSERVER_IP    = "127.0.0.1";
+    private final static int        POOL_SIZE        = 1;
+    private final static int        CONNECT_TIMEOUT  = 3000;
+    private final static int        READ_TIMEOUT     = 30000;
+    private final static long       MAX_IDLE_TIME    = 3 * 1000;
+    private final static int        READ_BUFFER_SIZE = 8 * 1024;
+    private final static byte[]     DONE             = { 'D', 'O', 'N', 'E', '.' };
+
+    private final int               mPort;
+    private LinkedList<Connection>  mIdleConnections = new LinkedList<Connection>();
+    /**
+     * the filler thread, null after closeAll() until the next fill
+     */
+    private Thread                  mFiller          = null;
+    private boolean                 mFillRequested   = false;
+
+    private long                    mConnectCount    = 0;
+    private long                    mConnectTime     = 0;
+    private long                    mDumpCount       = 0;
+    private long                    mDumpTime        = 0;
+    private long                    mWaitTime        = 0;
+    private long                    mAbortCount      = 0;
+
+    /**
+     * One command sent to view server and its output stream. Output is read
+     * as UTF-8 bytes line by line into a reused buffer, so no String is
+     * created for a line.
+     */
+    class Connection {
+        private Socket         mSocket       = null;
+        private InputStream    mIn           = null;
+        private BufferedWriter mOut          = null;
+        private long           mIdleSince    = 0;
+        private long           mSendTime     = 0;
+        private long           mWaitTime     = 0;
+        private String         mCommand      = null;
+        private boolean        mFromPool     = false;
+        private boolean        mHasReceived  = false;
+
+        private byte[]         mReadBuffer   = new byte[READ_BUFFER_SIZE];
+        private int            mReadPosition = 0;
+        private int            mReadLimit    = 0;
+        private byte[]         mLine         = new byte[READ_BUFFER_SIZE];
+        private int            mLineLength   = 0;
+
+        private Connection() throws IOException {
+            long begin = System.nanoTime();
+            mSocket = new Socket();
+            mSocket.connect(new InetSocketAddress(VIEWSERVER_IP, mPort), CONNECT_TIMEOUT);
+            // tolerate 30s dump, and then it will throw SocketTimeoutException
+            mSocket.setSoTimeout(READ_TIMEOUT);
+            mOut = new BufferedWriter(new OutputStreamWriter(mSocket.getOutputStream()));
+            mIn = mSocket.getInputStream();
+            mIdleSince = System.currentTimeMillis();
+            onConnected(System.nanoTime() - begin);
+        }
+
+        private void send(String command) throws IOException {
+            mCommand = command;
+            mSendTime = System.nanoTime();
+            mOut.write(command);
+            mOut.newLine();
+            mOut.flush();
+        }
+
+        /**
+         * read next line of the output into getLine()
+         *
+         * @return false if the output is over
+         * @throws IOException
+         */
+        boolean readLine() throws IOException {
+            mLineLength = 0;
+            while (true) {
+                if (mReadPosition == mReadLimit && !fill()) {
+                    // the last line may have no line separator
+                    return mLineLength > 0 && !isDone();
+                }
+
+                int end = mReadPosition;
+                while (end < mReadLimit && mReadBuffer[end] != '\n') {
+                    end++;
+                }
+                append(mReadPosition, end);
+                if (end < mReadLimit) {
+                    mReadPosition = end + 1;
+                    if (mLineLength > 0 && mLine[mLineLength - 1] == '\r') {
+                        mLineLength--;
+                    }
+                    return !isDone();
+                }
+                mReadPosition = mReadLimit;
+            }
+        }
+
+        /**
+         * @return UTF-8 of the line read by readLine(), it is overwritten by
+         *         the next readLine()
+         */
+        byte[] getLine() {
+            return mLine;
+        }
+
+        int getLineLength() {
+            return mLineLength;
+        }
+
+        /**
+         * @return false at the end of the stream
+         */
+        private boolean fill() throws IOException {
+            int count = 0;
+            long begin = System.nanoTime();
+            try {
+                count = mIn.read(mReadBuffer);
+            } catch (IOException e) {
+                mWaitTime += System.nanoTime() - begin;
+                if (!retry()) {
+                    throw e;
+                }
+                return fill();
+            }
+            // time blocked on view server, the rest of a dump is parsing
+            mWaitTime += System.nanoTime() - begin;
+
+            if (-1 == count) {
+                return retry() && fill();
+            }
+            mHasReceived = true;
+            mReadPosition = 0;
+            mReadLimit = count;
+            return true;
+        }
+
+        private void append(int start, int end) {
+            int length = end - start;
+            if (mLineLength + length > mLine.length) {
+                byte[] line = new byte[Math.max(mLineLength + length, mLine.length * 2)];
+                System.arraycopy(mLine, 0, line, 0, mLineLength);
+                mLine = line;
+            }
+            System.arraycopy(mReadBuffer, start, mLine, mLineLength, length);
+            mLineLength += length;
+        }
+
+        /**
+         * @return true if the line is "DONE." ignoring case
+         */
+        private boolean isDone() {
+            if (mLineLength != DONE.length) {
+                return false;
+            }
+            for (int i = 0; i < DONE.length; i++) {
+                if (Character.toUpperCase((char) mLine[i]) != DONE[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * A spare socket may have been closed by view server while it was
+         * idle, so resend the command by a new socket once.
+         */
+        private boolean retry() throws IOException {
+            if (!mFromPool || mHasReceived) {
+                return false;
+            }
+            Log.print("spare socket is broken, reconnect to view server");
+            closeQuietly(this, false);
+            Connection connection = new Connection();
+            mSocket = connection.mSocket;
+            mIn = connection.mIn;
+            mOut = connection.mOut;
+            mFromPool = false;
+            send(mCommand);
+            return true;
+        }
+    }
+
+    ViewServerConnectionPool(int port) {
+        mPort = port;
+    }
+
+    /**
+     * send a command to view server by a pooled or a new socket
+     *
+     * @param command
+     *            command of view server such as "DUMP -1"
+     * @return the connection to read output from
+     * @throws IOException
+     */
+    Connection open(String command) throws IOException {
+        Connection connection = takeIdleConnection();
+        if (null == connection) {
+            connection = new Connection();
+        }
+        connection.send(command);
+        return connection;
+    }
+
+    /**
+     * Give back a connection after its output has been read. An incomplete
+     * output is aborted at once, and view server will print
+     * [java.net.SocketException: Connection reset] in logcat at w level.
+     *
+     * @param connection
+     *            the connection returned by open()
+     * @param isCompleted
+     *            true if all of the output has been read
+     */
+    void release(Connection connection, boolean isCompleted) {
+        if (null == connection) {
+            return;
+        }
+
+        synchronized (this) {
+            mDumpCount++;
+            mDumpTime += System.nanoTime() - connection.mSendTime;
+            mWaitTime += connection.mWaitTime;
+            if (!isCompleted) {
+                mAbortCount++;
+            }
+        }
+        closeQuietly(connection, !isCompleted);
+
+        fillPool();
+    }
+
+    /**
+     * close all of the spare sockets and stop the filler, a socket being
+     * connected by it is closed too
+     */
+    synchronized void closeAll() {
+        for (Connection connection : mIdleConnections) {
+            closeQuietly(connection, false);
+        }
+        mIdleConnections.clear();
+        mFiller = null;
+        mFillRequested = false;
+        notifyAll();
+    }
+
+    /**
+     * @return the timings of connecting and dumping, and the number of dumps
+     *         aborted before their end. A dump is split into waiting for view
+     *         server and parsing the output.
+     */
+    synchronized String getStatistics() {
+        return String.format("connect[%s, %sms] dump[%s, %sms] wait[%sms] parse[%sms] abort[%s]",
+                mConnectCount, average(mConnectTime, mConnectCount), mDumpCount,
+                average(mDumpTime, mDumpCount), average(mWaitTime, mDumpCount),
+                average(mDumpTime - mWaitTime, mDumpCount), mAbortCount);
+    }
+
+    private synchronized void onConnected(long cost) {
+        mConnectCount++;
+        mConnectTime += cost;
+    }
+
+    private synchronized Connection takeIdleConnection() {
+        long now = System.currentTimeMillis();
+        while (!mIdleConnections.isEmpty()) {
+            Connection connection = mIdleConnections.removeFirst();
+            if (now - connection.mIdleSince < MAX_IDLE_TIME) {
+                connection.mFromPool = true;
+                return connection;
+            }
+            closeQuietly(connection, false);
+        }
+        return null;
+    }
+
+    /**
+     * Ask the filler to connect a spare socket, so the query thread never
+     * waits for it. The filler is started by the first fill and then waits
+     * for the next request.
+     */
+    private synchronized void fillPool() {
+        if (mIdleConnections.size() >= POOL_SIZE) {
+            return;
+        }
+        mFillRequested = true;
+        if (mFiller != null) {
+            notifyAll();
+            return;
+        }
+
+        mFiller = new Thread(new Runnable() {
+
+            public void run() {
+                fill();
+            }
+        }, "ViewServerPoolFiller");
+        mFiller.setDaemon(true);
+        mFiller.start();
+    }
+
+    /**
+     * loop of the filler thread until closeAll()
+     */
+    private void fill() {
+        while (true) {
+            synchronized (this) {
+                if (!waitForFillRequest()) {
+                    return;
+                }
+                mFillRequested = false;
+            }
+
+            Connection connection = null;
+            try {
+                connection = new Connection();
+            } catch (IOException e) {
+                // view server is closed, connect again on next query
+                Log.print("can not connect to view server: " + e.getMessage());
+            }
+            synchronized (this) {
+                if (mFiller != Thread.currentThread()) {
+                    // closeAll() while connecting
+                    if (connection != null) {
+                        closeQuietly(connection, false);
+                    }
+                    return;
+                }
+                if (connection != null) {
+                    mIdleConnections.add(connection);
+                }
+            }
+        }
+    }
+
+    /**
+     * Block until a spare socket is requested, and close spare sockets idle
+     * for MAX_IDLE_TIME meanwhile. It must be called with the lock held.
+     *
+     * @return false if the filler has been stopped by closeAll()
+     */
+    private boolean waitForFillRequest() {
+        while (mFiller == Thread.currentThread()) {
+            long now = System.currentTimeMillis();
+            while (!mIdleConnections.isEmpty()
+                    && now - mIdleConnections.getFirst().mIdleSince >= MAX_IDLE_TIME) {
+                closeQuietly(mIdleConnections.removeFirst(), false);
+            }
+            if (mFillRequested && mIdleConnections.size() < POOL_SIZE) {
+                return true;
+            }
+
+            long delay = mIdleConnections.isEmpty() ? 0 : mIdleConnections.getFirst().mIdleSince
+                    + MAX_IDLE_TIME - now;
+            try {
+                wait(delay);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                mFiller = null;
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static void closeQuietly(Connection connection, boolean reset) {
+        try {
+            if (reset) {
+                // send RST so that the socket is closed without waiting for remaining output
+                connection.mSocket.setSoLinger(true, 0);
+            }
+            connection.mSocket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static float average(long totalNanos, long count) {
+        return count == 0 ? 0 : totalNanos / count / 1000000f;
+    }
+}
@@ -0,0 +1,585 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Parent-indexed tree of the lines dumped from view server. Parent, depth,
+ * absolute offset and family visibility are resolved while lines are
+ * appended from the stack of ancestors of the last line, so they are known
+ * the moment a line arrives and a lookup costs O(1). The visibility of a line
+ * under an invisible ancestor is not parsed at all.
+ *
+ * Lines are kept as UTF-8 bytes in one buffer with an offset table, and
+ * properties are parsed from byte ranges, so a dump allocates a few large
+ * arrays instead of a String per line. A property is dumped as
+ * "key=length,value" where length counts UTF-16 chars of the value.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class ViewTree {
+    private final static int    INITIAL_CAPACITY    = 256;
+    private final static int    INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final static byte   STATE_INVISIBLE     = 0;
+    private final static byte   STATE_VISIBLE       = 1;
+
+    private final static byte[] KEY_LEFT            = toBytes("mLeft=");
+    private final static byte[] KEY_TOP             = toBytes("mTop=");
+    private final static byte[] KEY_SCROLL_X        = toBytes("mScrollX=");
+    private final static byte[] KEY_SCROLL_Y        = toBytes("mScrollY=");
+    private final static byte[] KEY_VISIBILITY      = toBytes("getVisibility()=");
+    private final static byte[] VALUE_VISIBLE       = toBytes("VISIBLE");
+
+    private byte[]              mBuffer             = new byte[INITIAL_BUFFER_SIZE];
+    private int                 mBufferSize         = 0;
+    private int                 mSize               = 0;
+    private int[]               mStarts             = new int[INITIAL_CAPACITY];
+    private int[]               mEnds               = new int[INITIAL_CAPACITY];
+    private int[]               mParents            = new int[INITIAL_CAPACITY];
+    private int[]               mDepths             = new int[INITIAL_CAPACITY];
+    private int[]               mOffsetXs           = new int[INITIAL_CAPACITY];
+    private int[]               mOffsetYs           = new int[INITIAL_CAPACITY];
+    private byte[]              mStates             = new byte[INITIAL_CAPACITY];
+
+    /**
+     * mPath[d] is the index of the ancestor at depth d of the last added line
+     */
+    private int[]               mPath               = new int[INITIAL_CAPACITY];
+    private int                 mPathSize           = 0;
+    private boolean             mIsComplete         = false;
+
+    private HashMap<String, PropertyIndex> mIndexes = new HashMap<String, PropertyIndex>();
+
+    /**
+     * append a dumped line and link it to its parent
+     *
+     * @param source
+     *            buffer holding the line in UTF-8 without line separator
+     * @param offset
+     *            start of the line in source
+     * @param length
+     *            length of the line in bytes
+     * @return index of the line
+     */
+    int add(byte[] source, int offset, int length) {
+        int index = mSize;
+        ensureCapacity(index + 1);
+        ensureBufferSize(mBufferSize + length);
+        System.arraycopy(source, offset, mBuffer, mBufferSize, length);
+        mStarts[index] = mBufferSize;
+        mBufferSize += length;
+        mEnds[index] = mBufferSize;
+        mSize++;
+
+        // a line can not be deeper than its previous line plus one
+        int depth = Math.min(countFrontWhitespace(index), mPathSize);
+        mParents[index] = depth == 0 ? -1 : mPath[depth - 1];
+        mDepths[index] = depth;
+        resolve(index);
+
+        if (depth >= mPath.length) {
+            mPath = grow(mPath, depth + 1);
+        }
+        mPath[depth] = index;
+        mPathSize = depth + 1;
+
+        return index;
+    }
+
+    /**
+     * mark that all of the output of view server has been added
+     */
+    void setComplete() {
+        mIsComplete = true;
+    }
+
+    /**
+     * @return false if the dump stopped early, so that only a prefix of the
+     *         hierarchy is known
+     */
+    boolean isComplete() {
+        return mIsComplete;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the line as a new String
+     */
+    String getLine(int index) {
+        return toString(mStarts[index], mEnds[index]);
+    }
+
+    /**
+     * @return all of the lines as new Strings
+     */
+    ArrayList<String> getLines() {
+        ArrayList<String> lines = new ArrayList<String>(mSize);
+        for (int i = 0; i < mSize; i++) {
+            lines.add(getLine(i));
+        }
+        return lines;
+    }
+
+    int getParent(int index) {
+        return mParents[index];
+    }
+
+    int getDepth(int index) {
+        return mDepths[index];
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @return the number of direct children, they are the following deeper
+     *         lines in dump order
+     */
+    int getChildCount(int index) {
+        int count = 0;
+        for (int i = index + 1; i < mSize && mDepths[i] > mDepths[index]; i++) {
+            if (mParents[i] == index) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * get the value of the given line according to the given key
+     *
+     * @param index
+     *            index of the line
+     * @param key
+     *            property's name such as mID
+     * @return the value, or null if the line has not the property
+     */
+    String getPropertyValue(int index, String key) {
+        return key.length() == 0 ? null : getValue(index, toBytes(key + "="));
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @param key
+     *            UTF-8 of "key=" returned by toSearchKey(), or null for class
+     *            name
+     * @return the value, or null if the line has not the property
+     */
+    String getValue(int index, byte[] key) {
+        long range = null == key ? findName(index) : findValue(index, key);
+        return range == -1 ? null : toString(rangeStart(range), rangeEnd(range));
+    }
+
+    /**
+     * get the int value of the given line according to the given key
+     *
+     * @param index
+     *            index of the line
+     * @param key
+     *            property's name such as getHeight()
+     * @param defaultValue
+     *            returned if the line has not the property or it is not a
+     *            number
+     * @return the value
+     */
+    int getIntPropertyValue(int index, String key, int defaultValue) {
+        if (key.length() == 0) {
+            return defaultValue;
+        }
+        return parseInt(findValue(index, toBytes(key + "=")), defaultValue);
+    }
+
+    /**
+     * get last part of class name from dumped line e.g.
+     * com.android.calculator2.ColorButton@43e49bf8, then ColorButton will be
+     * returned
+     *
+     * @param index
+     *            index of the line
+     * @return the last part of class name, or null if the line is not a view
+     */
+    String getName(int index) {
+        return getValue(index, null);
+    }
+
+    /**
+     * get the relative coordinates of the given line
+     *
+     * @param index
+     *            index of the line
+     * @return {mLeft, mTop, mScrollX, mScrollY} or null if any of them is
+     *         missing
+     */
+    int[] getRelativeCoordinates(int index) {
+        long left = findValue(index, KEY_LEFT);
+        long top = findValue(index, KEY_TOP);
+        long scrollX = findValue(index, KEY_SCROLL_X);
+        long scrollY = findValue(index, KEY_SCROLL_Y);
+        if (!isNumber(left) || !isNumber(top) || !isNumber(scrollX) || !isNumber(scrollY)) {
+            return null;
+        }
+        return new int[] { parseInt(left, 0), parseInt(top, 0), parseInt(scrollX, 0),
+                parseInt(scrollY, 0) };
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @return true if the view itself is visible
+     */
+    boolean isVisible(int index) {
+        long range = findValue(index, KEY_VISIBILITY);
+        return range != -1 && equalsAt(rangeStart(range), rangeEnd(range), VALUE_VISIBLE);
+    }
+
+    /**
+     * match the given line without creating Strings
+     *
+     * @param index
+     *            index of the line
+     * @param key
+     *            UTF-8 of "key=" returned by toSearchKey(), or null to match
+     *            class name
+     * @param value
+     *            UTF-8 of the value to be searched
+     * @param searchMode
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_INCLUDE_MATCHING or
+     *            SEARCHMODE_PREFIX_MATCHING
+     * @return true if matched
+     */
+    boolean matches(int index, byte[] key, byte[] value, int searchMode) {
+        long range = null == key ? findName(index) : findValue(index, key);
+        if (range == -1) {
+            return false;
+        }
+        int start = rangeStart(range);
+        int end = rangeEnd(range);
+
+        switch (searchMode) {
+        case ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING:
+            return equalsAt(start, end, value);
+        case ViewPropertyProvider.SEARCHMODE_INCLUDE_MATCHING:
+            return indexOf(start, end, value) != -1;
+        case ViewPropertyProvider.SEARCHMODE_PREFIX_MATCHING:
+            return end - start >= value.length && equalsAt(start, start + value.length, value);
+        default:
+            Log.print("Unknown type of SEARCHMODE");
+            return false;
+        }
+    }
+
+    /**
+     * get the index of a property, it is built at the first time
+     *
+     * @param key
+     *            property's name such as mID, or "name" for class name
+     * @return the index
+     */
+    PropertyIndex getIndex(String key) {
+        PropertyIndex index = mIndexes.get(key);
+        if (null == index) {
+            index = new PropertyIndex(this, key);
+            mIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @return true if the view and all of its ancestors are visible
+     */
+    boolean isFamilyVisible(int index) {
+        return mStates[index] == STATE_VISIBLE;
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @return sum of (mLeft - mScrollX) of the view and all of its ancestors
+     */
+    int getOffsetX(int index) {
+        return mOffsetXs[index];
+    }
+
+    /**
+     * @param index
+     *            index of the line
+     * @return sum of (mTop - mScrollY) of the view and all of its ancestors
+     */
+    int getOffsetY(int index) {
+        return mOffsetYs[index];
+    }
+
+    /**
+     * encode a search key once, so that every line can be matched without
+     * creating Strings
+     *
+     * @param key
+     *            property's name such as mID, or "name" for class name
+     * @return UTF-8 of "key=", or null for class name
+     */
+    static byte[] toSearchKey(String key) {
+        return "name".equals(key) ? null : toBytes(key + "=");
+    }
+
+    /**
+     * @return UTF-8 bytes of the given string
+     */
+    static byte[] toBytes(String string) {
+        try {
+            return string.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * resolve offset and visibility of a new line from its parent, which has
+     * been resolved when it was added
+     */
+    private void resolve(int index) {
+        int parent = mParents[index];
+        int x = parent == -1 ? 0 : mOffsetXs[parent];
+        int y = parent == -1 ? 0 : mOffsetYs[parent];
+        int[] relativeCoordinates = getRelativeCoordinates(index);
+        if (relativeCoordinates != null) {
+            // x += left - mScrollX
+            x += relativeCoordinates[0] - relativeCoordinates[2];
+            // y += top - mScrollY
+            y += relativeCoordinates[1] - relativeCoordinates[3];
+        }
+        mOffsetXs[index] = x;
+        mOffsetYs[index] = y;
+
+        // a view under an invisible ancestor is invisible whatever it says
+        boolean visible = (parent == -1 || mStates[parent] == STATE_VISIBLE) && isVisible(index);
+        mStates[index] = visible ? STATE_VISIBLE : STATE_INVISIBLE;
+    }
+
+    /**
+     * find the value of "key=length,value" in the given line
+     *
+     * @return start and end of the value in mBuffer packed by range(), or -1
+     */
+    private long findValue(int index, byte[] key) {
+        int end = mEnds[index];
+        int at = indexOf(mStarts[index], end, key);
+        if (at == -1) {
+            return -1;
+        }
+
+        int i = at + key.length;
+        int length = 0;
+        while (i < end && mBuffer[i] != ',') {
+            int digit = mBuffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            length = length * 10 + digit;
+            i++;
+        }
+        if (i == end) {
+            return -1;
+        }
+
+        // skip length UTF-16 chars of UTF-8 bytes
+        int valueStart = ++i;
+        for (int chars = 0; chars < length; chars++) {
+            if (i >= end) {
+                // the declared length runs over the line
+                return -1;
+            }
+            int b = mBuffer[i] & 0xff;
+            if (b >= 0xf0) {
+                // a supplementary character is a surrogate pair in UTF-16
+                i += 4;
+                chars++;
+            } else if (b >= 0xe0) {
+                i += 3;
+            } else if (b >= 0xc0) {
+                i += 2;
+            } else {
+                i++;
+            }
+            if (i > end) {
+                return -1;
+            }
+        }
+        return range(valueStart, i);
+    }
+
+    /**
+     * find the last part of class name before '@'
+     *
+     * @return start and end of the name in mBuffer packed by range(), or -1
+     */
+    private long findName(int index) {
+        int start = mStarts[index];
+        int at = start;
+        while (at < mEnds[index] && mBuffer[at] != '@') {
+            at++;
+        }
+        if (at == mEnds[index]) {
+            return -1;
+        }
+        int nameStart = at;
+        while (nameStart > start && mBuffer[nameStart - 1] != '.'
+                && mBuffer[nameStart - 1] != ' ') {
+            nameStart--;
+        }
+        return range(nameStart, at);
+    }
+
+    private static long range(int start, int end) {
+        return ((long) start << 32) | end;
+    }
+
+    private static int rangeStart(long range) {
+        return (int) (range >>> 32);
+    }
+
+    private static int rangeEnd(long range) {
+        return (int) range;
+    }
+
+    private boolean isNumber(long range) {
+        if (range == -1) {
+            return false;
+        }
+        int start = rangeStart(range);
+        int end = rangeEnd(range);
+        if (start < end && mBuffer[start] == '-') {
+            start++;
+        }
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (mBuffer[i] < '0' || mBuffer[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int parseInt(long range, int defaultValue) {
+        if (!isNumber(range)) {
+            return defaultValue;
+        }
+        int start = rangeStart(range);
+        int end = rangeEnd(range);
+        boolean negative = mBuffer[start] == '-';
+        int value = 0;
+        for (int i = negative ? start + 1 : start; i < end; i++) {
+            value = value * 10 + (mBuffer[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean equalsAt(int start, int end, byte[] value) {
+        if (end - start != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (mBuffer[start + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(int start, int end, byte[] pattern) {
+        int last = end - pattern.length;
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < pattern.length && mBuffer[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String toString(int start, int end) {
+        try {
+            return new String(mBuffer, start, end - start, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mParents.length) {
+            return;
+        }
+        mStarts = grow(mStarts, capacity);
+        mEnds = grow(mEnds, capacity);
+        mParents = grow(mParents, capacity);
+        mDepths = grow(mDepths, capacity);
+        mOffsetXs = grow(mOffsetXs, capacity);
+        mOffsetYs = grow(mOffsetYs, capacity);
+
+        byte[] states = new byte[mParents.length];
+        System.arraycopy(mStates, 0, states, 0, mStates.length);
+        mStates = states;
+    }
+
+    private void ensureBufferSize(int size) {
+        if (size <= mBuffer.length) {
+            return;
+        }
+        byte[] buffer = new byte[Math.max(size, mBuffer.length * 2)];
+        System.arraycopy(mBuffer, 0, buffer, 0, mBufferSize);
+        mBuffer = buffer;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[Math.max(capacity, array.length * 2)];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    /**
+     * count the number of the white space of the given line
+     *
+     * @param index
+     *            index of the line
+     * @return the number of the white space
+     */
+    private int countFrontWhitespace(int index) {
+        int count = 0;
+        int start = mStarts[index];
+        while (start + count < mEnds[index] && mBuffer[start + count] == ' ') {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+/**
+ * Cache of the last view tree dumped from the focused window.
+ *
+ * The cached tree is keyed by the focused window and a change generation.
+ * The generation is increased whenever an input event is injected, so the
+ * tree becomes stale after input, after the focused window changes or after
+ * max age. Input injected by others, such as monkey, adb or the app itself,
+ * does not increase the generation, so the cache is off until a max age is
+ * set.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class ViewTreeCache {
+    final static long DEFAULT_MAX_AGE = 0;
+
+    private long      mMaxAge         = DEFAULT_MAX_AGE;
+    private int       mGeneration     = 0;
+
+    private ViewTree  mTree           = null;
+    private String    mWindow         = null;
+    private int       mTreeGeneration = 0;
+    private long      mTreeTime       = 0;
+
+    /**
+     * @param maxAge
+     *            how long a dump can be reused in ms, 0 means no cache
+     */
+    synchronized void setMaxAge(long maxAge) {
+        mMaxAge = maxAge < 0 ? 0 : maxAge;
+        if (0 == mMaxAge) {
+            mTree = null;
+        }
+    }
+
+    synchronized boolean isEnabled() {
+        return mMaxAge > 0;
+    }
+
+    /**
+     * mark all of the dumps before as stale
+     */
+    synchronized void invalidate() {
+        mGeneration++;
+        mTree = null;
+    }
+
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * @param window
+     *            the focused window returned by GET_FOCUS
+     * @return the cached tree, or null if there is no fresh tree of the window
+     */
+    synchronized ViewTree get(String window) {
+        if (null == mTree || null == window) {
+            return null;
+        }
+        if (!window.equals(mWindow) || mTreeGeneration != mGeneration
+                || System.currentTimeMillis() - mTreeTime > mMaxAge) {
+            mTree = null;
+            return null;
+        }
+        return mTree;
+    }
+
+    /**
+     * @param window
+     *            the focused window when the dump started
+     * @param generation
+     *            the generation when the dump started
+     * @param time
+     *            the time when the dump started, the age of the tree counts
+     *            from it
+     * @param tree
+     *            the dumped tree
+     */
+    synchronized void put(String window, int generation, long time, ViewTree tree) {
+        if (null == window || null == tree || tree.size() == 0 || generation != mGeneration
+                || 0 == mMaxAge) {
+            return;
+        }
+        mTree = tree;
+        mWindow = window;
+        mTreeGeneration = generation;
+        mTreeTime = time;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Counts window changes reported by view server.
+ *
+ * After AUTOLIST view server keeps the connection open and writes
+ * "LIST UPDATE" when the window list changes and "ACTION_FOCUS UPDATE" when
+ * the focus changes. A waiter remembers getChangeCount() before a query and
+ * blocks in waitForChange() until the count moves. Changes inside a window
+ * are not reported, and AUTOLIST may be unsupported, so the waiter must
+ * always give a timeout and query again after it.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+class WindowChangeWatcher {
+    private final static String VIEWSERVER_IP   = "127.0.0.1";
+    private final static int    CONNECT_TIMEOUT = 3000;
+    private final static long   RETRY_INTERVAL  = 5000;
+    private final static String LIST_UPDATE     = "LIST UPDATE";
+    private final static String FOCUS_UPDATE    = "ACTION_FOCUS UPDATE";
+
+    private final int           mPort;
+    private Thread              mThread         = null;
+    private Socket              mSocket         = null;
+    private long                mStartTime      = 0;
+    private long                mChangeCount    = 0;
+
+    WindowChangeWatcher(int port) {
+        mPort = port;
+    }
+
+    /**
+     * @return the number of window changes seen so far
+     */
+    synchronized long getChangeCount() {
+        start();
+        return mChangeCount;
+    }
+
+    /**
+     * block until windows change after changeCount was got
+     *
+     * @param changeCount
+     *            returned by getChangeCount() before the last query
+     * @param timeout
+     *            max time to wait in ms
+     * @return true if windows changed, false if timeout
+     */
+    synchronized boolean waitForChange(long changeCount, long timeout) {
+        start();
+        long endTime = System.currentTimeMillis() + timeout;
+        while (mChangeCount == changeCount) {
+            long delay = endTime - System.currentTimeMillis();
+            if (delay <= 0) {
+                return false;
+            }
+            try {
+                wait(delay);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * close the connection, it is opened again by the next wait
+     */
+    synchronized void stop() {
+        if (mSocket != null) {
+            try {
+                mSocket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        mThread = null;
+        mSocket = null;
+        mStartTime = 0;
+    }
+
+    /**
+     * Start watching if it is not. A failed start is not retried within
+     * RETRY_INTERVAL, so an old view server without AUTOLIST is not hammered.
+     */
+    private void start() {
+        long now = System.currentTimeMillis();
+        if (mThread != null || now - mStartTime < RETRY_INTERVAL) {
+            return;
+        }
+
+        mStartTime = now;
+        mThread = new Thread(new Runnable() {
+
+            public void run() {
+                watch();
+            }
+        }, "WindowChangeWatcher");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    private void watch() {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(VIEWSERVER_IP, mPort), CONNECT_TIMEOUT);
+            synchronized (this) {
+                if (mThread != Thread.currentThread()) {
+                    // stopped while connecting
+                    return;
+                }
+                mSocket = socket;
+            }
+
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream()));
+            out.write("AUTOLIST");
+            out.newLine();
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream()));
+            String line = null;
+            while ((line = in.readLine()) != null) {
+                // e.g. "FAILED" from a view server without AUTOLIST
+                if (LIST_UPDATE.equals(line) || FOCUS_UPDATE.equals(line)) {
+                    onChanged();
+                }
+            }
+        } catch (IOException e) {
+            // view server is closed, or the socket is closed by stop()
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (this) {
+                if (mThread == Thread.currentThread()) {
+                    mThread = null;
+                    mSocket = null;
+                }
+            }
+        }
+    }
+
+    private synchronized void onChanged() {
+        mChangeCount++;
+        notifyAll();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import junit.framework.TestCase;
+
+/**
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class BatteryHistoryTest extends TestCase {
+    private final static long BASE_TIME = 1300000000000L;
+
+    public void testExportAndParseKeepSamples() {
+        BatteryHistory history = new BatteryHistory(8);
+        history.add(BASE_TIME, 90, 4100, 305, 2);
+        history.add(BASE_TIME + 60000, 89, 4080, 310, 0);
+        history.add(BASE_TIME + 120000, 88, 4060, -15, 1);
+
+        BatteryHistory parsed = BatteryHistory.parse(history.export(0, Long.MAX_VALUE));
+        assertNotNull(parsed);
+        assertEquals(3, parsed.size());
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(history.getTime(i), parsed.getTime(i));
+            assertEquals(history.getLevel(i), parsed.getLevel(i));
+            assertEquals(history.getVoltage(i), parsed.getVoltage(i));
+            assertEquals(history.getTemperature(i), parsed.getTemperature(i));
+            assertEquals(history.getPlugged(i), parsed.getPlugged(i));
+        }
+        assertEquals(-2, parsed.getLevelDelta());
+        assertEquals(-40, parsed.getVoltageDelta());
+        assertEquals(120000, parsed.getDuration());
+    }
+
+    public void testExportStartsAtLastSampleBeforeWindow() {
+        BatteryHistory history = new BatteryHistory(8);
+        history.add(BASE_TIME, 90, 4100, 300, 0);
+        history.add(BASE_TIME + 1000, 80, 4000, 300, 0);
+        history.add(BASE_TIME + 5000, 79, 3990, 300, 0);
+        history.add(BASE_TIME + 9000, 78, 3980, 300, 0);
+
+        // one change in the window still gives a delta
+        BatteryHistory parsed = BatteryHistory.parse(history.export(BASE_TIME + 3000,
+                BASE_TIME + 6000));
+        assertEquals(2, parsed.size());
+        assertEquals(BASE_TIME + 1000, parsed.getTime(0));
+        assertEquals(BASE_TIME + 5000, parsed.getTime(1));
+        assertEquals(-1, parsed.getLevelDelta());
+
+        // a sample exactly at fromTime is the baseline itself
+        parsed = BatteryHistory.parse(history.export(BASE_TIME + 5000, BASE_TIME + 6000));
+        assertEquals(1, parsed.size());
+        assertEquals(0, parsed.getLevelDelta());
+
+        // no change in the window
+        parsed = BatteryHistory.parse(history.export(BASE_TIME + 9500, BASE_TIME + 9900));
+        assertEquals(1, parsed.size());
+        assertEquals(78, parsed.getLevel(0));
+
+        // the window is before all samples
+        parsed = BatteryHistory.parse(history.export(0, BASE_TIME - 1));
+        assertEquals(0, parsed.size());
+        assertEquals(0, parsed.getDuration());
+    }
+
+    public void testOldestSamplesAreOverwritten() {
+        BatteryHistory history = new BatteryHistory(3);
+        for (int i = 0; i < 5; i++) {
+            history.add(BASE_TIME + i, 100 - i, 4000, 300, 0);
+        }
+        assertEquals(3, history.size());
+        assertEquals(BASE_TIME + 2, history.getTime(0));
+        assertEquals(96, history.getLevel(2));
+        assertEquals(-2, history.getLevelDelta());
+        try {
+            history.getLevel(3);
+            fail("index out of size");
+        } catch (IndexOutOfBoundsException e) {
+        }
+    }
+
+    public void testParseRejectsBrokenData() {
+        assertNull(BatteryHistory.parse(null));
+        assertNull(BatteryHistory.parse(new byte[4]));
+
+        BatteryHistory history = new BatteryHistory(4);
+        history.add(BASE_TIME, 90, 4100, 300, 0);
+        byte[] data = history.export(0, Long.MAX_VALUE);
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertNull(BatteryHistory.parse(truncated));
+    }
+}
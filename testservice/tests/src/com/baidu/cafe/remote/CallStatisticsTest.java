@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import junit.framework.TestCase;
+
+/**
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class CallStatisticsTest extends TestCase {
+
+    public void testPercentilesAreBucketBounds() {
+        CallStatistics statistics = new CallStatistics();
+        // [2us, 4us)
+        for (int i = 0; i < 8; i++) {
+            statistics.record("getText", 3000);
+        }
+        // [512us, 1024us)
+        statistics.record("getText", 600000);
+        statistics.record("getText", 1000000);
+
+        String report = statistics.getReport();
+        assertTrue(report, report.startsWith("getText[10, "));
+        assertTrue(report, report.contains("p50<4us"));
+        assertTrue(report, report.contains("p90<1ms"));
+    }
+
+    public void testSlowCallsFillTheTail() {
+        CallStatistics statistics = new CallStatistics();
+        for (int i = 0; i < 9; i++) {
+            statistics.record("clickView", 3000);
+        }
+        // 100ms is in [65536us, 131072us)
+        statistics.record("clickView", 100000000);
+
+        String report = statistics.getReport();
+        assertTrue(report, report.contains("p50<4us"));
+        assertTrue(report, report.contains("p90<4us"));
+        statistics.record("clickView", 100000000);
+        report = statistics.getReport();
+        assertTrue(report, report.contains("p90<131ms"));
+    }
+
+    public void testReportIsSortedByTotal() {
+        CallStatistics statistics = new CallStatistics();
+        for (int i = 0; i < 100; i++) {
+            statistics.record("fast", 1000);
+        }
+        statistics.record("slow", 50000000);
+        statistics.record("middle", 2000000);
+
+        String[] lines = statistics.getReport().split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("slow[1, "));
+        assertTrue(lines[1], lines[1].startsWith("middle[1, "));
+        assertTrue(lines[2], lines[2].startsWith("fast[100, "));
+    }
+
+    public void testResetDropsCounters() {
+        CallStatistics statistics = new CallStatistics();
+        assertFalse(statistics.isEnabled());
+        statistics.setEnabled(true);
+        assertTrue(statistics.isEnabled());
+
+        statistics.record("getTopActivity", 1000);
+        statistics.reset();
+        assertEquals("", statistics.getReport());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.app.Instrumentation;
+import android.view.MotionEvent;
+
+import junit.framework.TestCase;
+
+/**
+ * Plays gestures into an instrumentation which only records the events, each
+ * as "time action pointerId(x,y)...", time is from the down time and "-" for
+ * a cancel.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class GesturePlayerTest extends TestCase {
+    // MotionEvent.ACTION_POINTER_DOWN and UP of pointer index 1
+    private final static int  POINTER_1_DOWN = 5 | (1 << 8);
+    private final static int  POINTER_1_UP   = 6 | (1 << 8);
+
+    private ArrayList<String> mEvents        = new ArrayList<String>();
+    private GesturePlayer     mPlayer        = null;
+    // events from this one on are rejected, except a cancel
+    private int               mRejectFrom    = Integer.MAX_VALUE;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPlayer = new GesturePlayer(new Instrumentation() {
+
+            @Override
+            public void sendPointerSync(MotionEvent event) {
+                boolean isCancel = MotionEvent.ACTION_CANCEL == event.getAction();
+                if (!isCancel && mEvents.size() >= mRejectFrom) {
+                    throw new SecurityException("window of another app");
+                }
+                // the event is recycled after it is sent
+                StringBuilder builder = new StringBuilder();
+                builder.append(isCancel ? "-" : event.getEventTime() - event.getDownTime());
+                builder.append(' ').append(event.getAction());
+                for (int i = 0; i < event.getPointerCount(); i++) {
+                    builder.append(' ').append(event.getPointerId(i));
+                    builder.append('(').append((int) event.getX(i));
+                    builder.append(',').append((int) event.getY(i)).append(')');
+                }
+                mEvents.add(builder.toString());
+            }
+        });
+    }
+
+    public void testEveryStepOfDragIsOneFrame() {
+        mPlayer.play(Gesture.touch(0, 30, 0, 0, 3, 0));
+        assertEvents("0 0 0(0,0)", "16 2 0(10,0)", "32 2 0(20,0)", "48 2 0(30,0)",
+                "48 1 0(30,0)");
+    }
+
+    public void testStepsOfLegacyDragAreNotSpaced() {
+        mPlayer.play(Gesture.touch(0, 30, 0, 0, 3, 0, 0));
+        assertEvents("0 0 0(0,0)", "0 2 0(10,0)", "0 2 0(20,0)", "0 2 0(30,0)", "0 1 0(30,0)");
+    }
+
+    public void testLongClickHoldsBeforeUp() {
+        mPlayer.play(Gesture.touch(5, 5, 6, 6, 0, 100));
+        assertEvents("0 0 0(5,6)", "0 2 0(5,6)", "100 1 0(5,6)");
+    }
+
+    public void testMovesOfSameTimeAreMerged() {
+        mPlayer.play(Gesture.linear(new float[] { 0, 0, 100, 0 },
+                new float[] { 32, 0, 132, 0 }, 32));
+        assertEvents("0 0 0(0,0)", "0 " + POINTER_1_DOWN + " 0(0,0) 1(100,0)",
+                "16 2 0(16,0) 1(116,0)", "32 2 0(32,0) 1(132,0)",
+                "32 " + POINTER_1_UP + " 0(32,0) 1(132,0)", "32 1 0(32,0)");
+    }
+
+    public void testSecondMoveOfPointerStartsNewFrame() {
+        mPlayer.play(new Gesture().down(0, 0, 0, 0).move(0, 10, 0, 16).move(0, 20, 0, 16)
+                .up(0, 20, 0, 16));
+        assertEvents("0 0 0(0,0)", "16 2 0(10,0)", "16 2 0(20,0)", "16 1 0(20,0)");
+    }
+
+    public void testMoveOfPointerNotDownIsDropped() {
+        mPlayer.play(new Gesture().down(0, 0, 0, 0).move(1, 10, 0, 16).up(0, 0, 0, 16));
+        assertEvents("0 0 0(0,0)", "16 1 0(0,0)");
+    }
+
+    public void testRejectedGestureIsCanceled() {
+        mRejectFrom = 2;
+        mPlayer.play(Gesture.touch(0, 30, 0, 0, 3, 0));
+        assertEvents("0 0 0(0,0)", "16 2 0(10,0)", "- 3 0(10,0)");
+    }
+
+    public void testRejectedDownIsNotCanceled() {
+        mRejectFrom = 0;
+        mPlayer.play(Gesture.touch(0, 30, 0, 0, 3, 0));
+        assertEvents();
+    }
+
+    private void assertEvents(String... expected) {
+        assertEquals(Arrays.asList(expected), mEvents);
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import android.test.InstrumentationTestCase;
+
+/**
+ * Replays a recorded DUMP of view server from a local socket and reports how
+ * a dump splits into waiting for the output and parsing it, and what the
+ * lookups on the parsed tree cost. The dumps are served by this test, so the
+ * numbers depend on the device only, not on what is on its screen. Run it by
+ *
+ * <pre>
+ * adb shell am instrument -w -e class com.baidu.cafe.remote.ViewServerBenchmark \
+ *         com.baidu.cafe.remote.tests/android.test.InstrumentationTestRunner
+ * adb logcat -s ViewServerBenchmark
+ * </pre>
+ *
+ * assets/dump_apidemos.txt is a "DUMP -1" of an ApiDemos list screen of 253
+ * views in the line format of view server, ending with "DONE.". Replace it by
+ * the output of "echo DUMP -1 | nc 127.0.0.1 4939" on a device to measure
+ * another screen. Larger screens of SIZES views are generated from it by
+ * repeating the items of its ListView, the last TextView of them has the
+ * text TARGET.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class ViewServerBenchmark extends InstrumentationTestCase {
+    private final static String   FIXTURE       = "dump_apidemos.txt";
+    private final static int      FIXTURE_VIEWS = 253;
+    private final static int[]    SIZES         = { 500, 5000, 20000 };
+    private final static String   TARGET        = "Target";
+    private final static String[] GET_KEYS      = { "mID", "mText", "childCount",
+            "getVisibility()"                  };
+    private final static int      WARMUP_ROUNDS = 20;
+    /**
+     * rounds of the fixture, a larger dump has less rounds of the same bytes
+     */
+    private final static int      ROUNDS        = 200;
+    private final static Charset  UTF_8         = Charset.forName("UTF-8");
+
+    private byte[]                mFixture      = null;
+    // read after the rounds, so that the lookups can not be skipped
+    private long                  mOffsetSum    = 0;
+    private volatile byte[]       mServed       = null;
+    private ServerSocket          mServerSocket = null;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFixture = readAsset(FIXTURE);
+        mServed = mFixture;
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread server = new Thread(new Runnable() {
+
+            public void run() {
+                serve();
+            }
+        }, "FakeViewServer");
+        server.setDaemon(true);
+        server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServerSocket.close();
+        super.tearDown();
+    }
+
+    /**
+     * read the whole dump, as LIST and dumpAllLines() do
+     */
+    public void testDumpAll() throws IOException {
+        runDump("all", new ViewPredicate(true), 0, FIXTURE_VIEWS, ROUNDS);
+        for (int views : SIZES) {
+            mServed = generate(views);
+            runDump("all of " + views, new ViewPredicate(true), 0, views, getRounds(views));
+        }
+    }
+
+    /**
+     * stop at the first match in the middle of the dump, as clickView does
+     */
+    public void testDumpFirstMatch() throws IOException {
+        runDump("first match", ViewPredicate.compile("mText", "Graphics",
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING, true), 1, 1, ROUNDS);
+    }
+
+    /**
+     * parse the dumps from memory, there is nothing to wait for
+     */
+    public void testParseOnly() {
+        runParse(mFixture, FIXTURE_VIEWS);
+        for (int views : SIZES) {
+            runParse(generate(views), views);
+        }
+    }
+
+    /**
+     * the lookups of getAbsoluteCoordinates() and of a query of visible views
+     * on every view of a parsed dump
+     */
+    public void testCoordinatesAndVisibility() {
+        for (int views : SIZES) {
+            byte[] data = generate(views);
+            ViewTree viewTree = parse(data, splitLines(data));
+            int rounds = getRounds(views);
+            int visibleCount = 0;
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                visibleCount = lookUp(viewTree);
+            }
+
+            long begin = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                assertEquals(visibleCount, lookUp(viewTree));
+            }
+            assertTrue(visibleCount > 0);
+            Log.print(String.format(
+                    "coordinates and visibility of %s views: %.1fns per view, sum %s", views,
+                    (System.nanoTime() - begin) / (float) rounds / views, mOffsetSum));
+        }
+    }
+
+    /**
+     * a query of the last view by getViewsProperties(), from the dump
+     * command to the returned properties
+     */
+    public void testGetViewsProperties() {
+        SystemLib systemLib = new SystemLib(getInstrumentation().getTargetContext());
+        for (int views : SIZES) {
+            mServed = generate(views);
+            ViewPropertyProvider provider = new ViewPropertyProvider(systemLib,
+                    mServerSocket.getLocalPort());
+            int rounds = Math.min(getRounds(views), ROUNDS / 10);
+            for (int i = 0; i < WARMUP_ROUNDS / 10; i++) {
+                getTarget(provider);
+            }
+
+            long begin = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                getTarget(provider);
+            }
+            Log.print(String.format("getViewsProperties of %s views: %.3fms", views,
+                    (System.nanoTime() - begin) / (float) rounds / 1000000f));
+        }
+    }
+
+    private static int getRounds(int views) {
+        return Math.max(5, ROUNDS * FIXTURE_VIEWS / views);
+    }
+
+    private void getTarget(ViewPropertyProvider provider) {
+        ArrayList<String[]> targets = provider.getViewsProperties("mText", TARGET,
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING, 1, GET_KEYS, true, false);
+        assertEquals(1, targets.size());
+        assertEquals(TARGET, targets.get(0)[1]);
+    }
+
+    /**
+     * @return number of visible views
+     */
+    private int lookUp(ViewTree viewTree) {
+        int visibleCount = 0;
+        for (int i = 0; i < viewTree.size(); i++) {
+            if (viewTree.isFamilyVisible(i) && viewTree.getRelativeCoordinates(i) != null) {
+                visibleCount++;
+                mOffsetSum += viewTree.getOffsetX(i) + viewTree.getOffsetY(i);
+            }
+        }
+        return visibleCount;
+    }
+
+    private void runParse(byte[] data, int expectedViews) {
+        ArrayList<int[]> lines = splitLines(data);
+        int rounds = expectedViews == FIXTURE_VIEWS ? ROUNDS : getRounds(expectedViews);
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            parse(data, lines);
+        }
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(expectedViews, parse(data, lines).size());
+        }
+        Log.print(String.format("parse only: %.3fms per dump of %s views, %s bytes",
+                (System.nanoTime() - begin) / (float) rounds / 1000000f, expectedViews,
+                data.length));
+    }
+
+    private void runDump(String name, ViewPredicate predicate, int targetNumber,
+            int expectedTargets, int rounds) throws IOException {
+        ViewServerConnectionPool pool = new ViewServerConnectionPool(mServerSocket.getLocalPort());
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            dump(pool, predicate, targetNumber);
+        }
+        pool.closeAll();
+
+        // a new pool so that the warm up is not counted
+        pool = new ViewServerConnectionPool(mServerSocket.getLocalPort());
+        for (int i = 0; i < rounds; i++) {
+            assertEquals(expectedTargets, dump(pool, predicate, targetNumber));
+        }
+        pool.closeAll();
+        Log.print(name + ": " + pool.getStatistics());
+    }
+
+    /**
+     * the same loop as ViewPropertyProvider.dumpLinesFromViewServer()
+     *
+     * @return number of lines dumped if predicate has no condition, else
+     *         number of matched lines
+     */
+    private int dump(ViewServerConnectionPool pool, ViewPredicate predicate, int targetNumber)
+            throws IOException {
+        ViewTree viewTree = new ViewTree();
+        int targets = 0;
+        boolean isCompleted = false;
+        ViewServerConnectionPool.Connection connection = null;
+        try {
+            connection = pool.open("DUMP -1");
+            while (true) {
+                if (!connection.readLine()) {
+                    isCompleted = true;
+                    viewTree.setComplete();
+                    break;
+                }
+                int index = viewTree.add(connection.getLine(), 0, connection.getLineLength());
+                if (predicate.matches(viewTree, index) && ++targets == targetNumber) {
+                    break;
+                }
+            }
+        } finally {
+            pool.release(connection, isCompleted);
+        }
+        return 0 == targetNumber ? viewTree.size() : targets;
+    }
+
+    private static ViewTree parse(byte[] data, ArrayList<int[]> lines) {
+        ViewTree viewTree = new ViewTree();
+        for (int[] line : lines) {
+            viewTree.add(data, line[0], line[1]);
+        }
+        viewTree.setComplete();
+        return viewTree;
+    }
+
+    /**
+     * @return start and length of each line before "DONE."
+     */
+    private static ArrayList<int[]> splitLines(byte[] data) {
+        ArrayList<int[]> lines = new ArrayList<int[]>();
+        int start = 0;
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (i - start == 5 && data[start] == 'D') {
+                break;
+            }
+            lines.add(new int[] { start, i - start });
+            start = i + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Make a dump of the given number of views from the fixture. The lines
+     * before and after its ListView items are kept, the items are repeated
+     * until there are enough lines, so the last item may be cut.
+     */
+    private byte[] generate(int views) {
+        ArrayList<String> lines = new ArrayList<String>();
+        for (int[] line : splitLines(mFixture)) {
+            lines.add(new String(mFixture, line[0], line[1], UTF_8));
+        }
+
+        int list = 0;
+        while (!lines.get(list).trim().startsWith("android.widget.ListView@")) {
+            list++;
+        }
+        int itemStart = list + 1;
+        int itemEnd = itemStart;
+        while (getDepth(lines.get(itemEnd)) > getDepth(lines.get(list))) {
+            itemEnd++;
+        }
+        int tailSize = lines.size() - itemEnd;
+        assertTrue(views > itemStart + tailSize);
+
+        ArrayList<String> generated = new ArrayList<String>(lines.subList(0, itemStart));
+        for (int i = 0; generated.size() < views - tailSize; i++) {
+            generated.add(lines.get(itemStart + i % (itemEnd - itemStart)));
+        }
+        for (int i = generated.size() - 1; i >= itemStart; i--) {
+            String line = generated.get(i);
+            if (line.trim().startsWith("android.widget.TextView@")) {
+                generated.set(i, setText(line, TARGET));
+                break;
+            }
+        }
+        generated.addAll(lines.subList(itemEnd, lines.size()));
+
+        StringBuilder builder = new StringBuilder();
+        for (String line : generated) {
+            builder.append(line).append('\n');
+        }
+        builder.append("DONE.\n");
+        return builder.toString().getBytes(UTF_8);
+    }
+
+    private static int getDepth(String line) {
+        int depth = 0;
+        while (depth < line.length() && line.charAt(depth) == ' ') {
+            depth++;
+        }
+        return depth;
+    }
+
+    /**
+     * replace the value of mText, whose length is in UTF-16 chars
+     */
+    private static String setText(String line, String text) {
+        int key = line.indexOf(" mText=");
+        int comma = line.indexOf(',', key);
+        int length = Integer.parseInt(line.substring(key + 7, comma));
+        return line.substring(0, key) + " mText=" + text.length() + "," + text
+                + line.substring(comma + 1 + length);
+    }
+
+    private void serve() {
+        while (!mServerSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                // closed by tearDown()
+                return;
+            }
+            // a spare socket of the pool stays idle, so serve each one apart
+            new Thread(new Runnable() {
+
+                public void run() {
+                    reply(socket);
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * wait for a command line and send the dump like view server does
+     */
+    private void reply(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            int c = 0;
+            while ((c = in.read()) != -1 && c != '\n') {
+            }
+            if (c != -1) {
+                OutputStream out = socket.getOutputStream();
+                out.write(mServed);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client aborted the dump
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private byte[] readAsset(String name) throws IOException {
+        InputStream in = getInstrumentation().getContext().getAssets().open(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count = 0;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.io.UnsupportedEncodingException;
+
+import junit.framework.TestCase;
+
+/**
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class ViewTreeTest extends TestCase {
+    private final static String POSITION = " mLeft=2,10 mTop=2,20 mScrollX=1,0 mScrollY=1,5";
+
+    public void testLinksLinesToParents() throws UnsupportedEncodingException {
+        ViewTree viewTree = new ViewTree();
+        add(viewTree, "android.widget.FrameLayout@1 getVisibility()=7,VISIBLE");
+        add(viewTree, " android.widget.LinearLayout@2 getVisibility()=7,VISIBLE");
+        add(viewTree, "  android.widget.TextView@3 getVisibility()=7,VISIBLE");
+        add(viewTree, " android.widget.Button@4 getVisibility()=7,VISIBLE");
+        // deeper than its previous line plus one
+        add(viewTree, "    android.widget.ImageView@5 getVisibility()=7,VISIBLE");
+
+        assertEquals(5, viewTree.size());
+        assertEquals(-1, viewTree.getParent(0));
+        assertEquals(0, viewTree.getParent(1));
+        assertEquals(1, viewTree.getParent(2));
+        assertEquals(0, viewTree.getParent(3));
+        assertEquals(3, viewTree.getParent(4));
+        assertEquals(2, viewTree.getDepth(4));
+        assertEquals(2, viewTree.getChildCount(0));
+        assertEquals("TextView", viewTree.getName(2));
+    }
+
+    public void testResolvesOffsetsAndFamilyVisibility() throws UnsupportedEncodingException {
+        ViewTree viewTree = new ViewTree();
+        add(viewTree, "A@1" + POSITION + " getVisibility()=7,VISIBLE");
+        add(viewTree, " B@2 mLeft=1,1 mTop=1,2 mScrollX=1,0 mScrollY=1,0 getVisibility()=4,GONE");
+        add(viewTree, "  C@3 mLeft=1,1 mTop=1,2 mScrollX=1,0 mScrollY=1,0 getVisibility()=7,VISIBLE");
+        add(viewTree, " D@4 mLeft=1,3 mTop=1,4 mScrollX=1,0 mScrollY=1,0 getVisibility()=7,VISIBLE");
+
+        assertEquals(10, viewTree.getOffsetX(0));
+        assertEquals(15, viewTree.getOffsetY(0));
+        assertEquals(12, viewTree.getOffsetX(2));
+        assertEquals(19, viewTree.getOffsetY(2));
+        assertEquals(13, viewTree.getOffsetX(3));
+        assertEquals(19, viewTree.getOffsetY(3));
+
+        assertTrue(viewTree.isFamilyVisible(0));
+        assertFalse(viewTree.isFamilyVisible(1));
+        // visible itself, but under a gone parent
+        assertTrue(viewTree.isVisible(2));
+        assertFalse(viewTree.isFamilyVisible(2));
+        assertTrue(viewTree.isFamilyVisible(3));
+    }
+
+    public void testReadsValuesByUtf16Length() throws UnsupportedEncodingException {
+        ViewTree viewTree = new ViewTree();
+        add(viewTree, "TextView@1 mText=4,中文ab mID=7,id/text");
+        // a supplementary character counts as two chars
+        add(viewTree, "TextView@2 mText=3,😀a getHeight()=2,48");
+        add(viewTree, "TextView@3 mText=0, mID=5,NO_ID");
+
+        assertEquals("中文ab", viewTree.getPropertyValue(0, "mText"));
+        assertEquals("id/text", viewTree.getPropertyValue(0, "mID"));
+        assertEquals("😀a", viewTree.getPropertyValue(1, "mText"));
+        assertEquals(48, viewTree.getIntPropertyValue(1, "getHeight()", -1));
+        assertEquals("", viewTree.getPropertyValue(2, "mText"));
+        assertEquals("NO_ID", viewTree.getPropertyValue(2, "mID"));
+        assertNull(viewTree.getPropertyValue(0, "mTag"));
+        assertEquals(-1, viewTree.getIntPropertyValue(0, "mText", -1));
+    }
+
+    public void testLengthOverrunningTheLastLine() throws UnsupportedEncodingException {
+        ViewTree viewTree = new ViewTree();
+        add(viewTree, "TextView@1 mText=5,Hello");
+        add(viewTree, "TextView@2 mText=20,short");
+
+        assertEquals("Hello", viewTree.getPropertyValue(0, "mText"));
+        assertNull(viewTree.getPropertyValue(1, "mText"));
+        assertFalse(viewTree.matches(1, ViewTree.toSearchKey("mText"), ViewTree.toBytes("short"),
+                ViewPropertyProvider.SEARCHMODE_INCLUDE_MATCHING));
+    }
+
+    public void testMatchesBySearchMode() throws UnsupportedEncodingException {
+        ViewTree viewTree = new ViewTree();
+        add(viewTree, "android.widget.TextView@1 mText=11,Hello World");
+        byte[] key = ViewTree.toSearchKey("mText");
+
+        assertTrue(viewTree.matches(0, key, ViewTree.toBytes("Hello World"),
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING));
+        assertFalse(viewTree.matches(0, key, ViewTree.toBytes("Hello"),
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING));
+        assertTrue(viewTree.matches(0, key, ViewTree.toBytes("o W"),
+                ViewPropertyProvider.SEARCHMODE_INCLUDE_MATCHING));
+        assertTrue(viewTree.matches(0, key, ViewTree.toBytes("Hello"),
+                ViewPropertyProvider.SEARCHMODE_PREFIX_MATCHING));
+        assertFalse(viewTree.matches(0, key, ViewTree.toBytes("World"),
+                ViewPropertyProvider.SEARCHMODE_PREFIX_MATCHING));
+        assertTrue(viewTree.matches(0, ViewTree.toSearchKey("name"), ViewTree.toBytes("TextView"),
+                ViewPropertyProvider.SEARCHMODE_COMPLETE_MATCHING));
+    }
+
+    private static void add(ViewTree viewTree, String line) throws UnsupportedEncodingException {
+        byte[] bytes = line.getBytes("UTF-8");
+        viewTree.add(bytes, 0, bytes.length);
+    }
+}
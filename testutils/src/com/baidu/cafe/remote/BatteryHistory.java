@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Samples of ACTION_BATTERY_CHANGED kept in a fixed-size ring buffer.
+ *
+ * Samples are stored in primitive arrays, so adding one allocates nothing,
+ * and the oldest sample is overwritten when the buffer is full. Arms exports
+ * a time window by export(), Armser reads it back by parse(), e.g.
+ *
+ * <pre>
+ * long start = System.currentTimeMillis();
+ * // run the test
+ * BatteryHistory history = armser.getBatteryHistory(start, System.currentTimeMillis());
+ * int levelDrop = -history.getLevelDelta();
+ * </pre>
+ *
+ * Time is System.currentTimeMillis() on device, voltage is in mV and
+ * temperature is in tenths of a degree centigrade.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class BatteryHistory {
+    /**
+     * base time(8), count(4), then per sample time offset(4), level(2),
+     * voltage(2), temperature(2), plugged(1)
+     */
+    private final static int HEADER_SIZE   = 12;
+    private final static int SAMPLE_SIZE   = 11;
+
+    private long[]           mTimes        = null;
+    private int[]            mLevels       = null;
+    private int[]            mVoltages     = null;
+    private int[]            mTemperatures = null;
+    private int[]            mPlugged      = null;
+    private int              mNext         = 0;
+    private int              mSize         = 0;
+
+    /**
+     * @param capacity
+     *            max number of samples, older samples are dropped
+     */
+    public BatteryHistory(int capacity) {
+        mTimes = new long[capacity];
+        mLevels = new int[capacity];
+        mVoltages = new int[capacity];
+        mTemperatures = new int[capacity];
+        mPlugged = new int[capacity];
+    }
+
+    public synchronized void add(long time, int level, int voltage, int temperature, int plugged) {
+        mTimes[mNext] = time;
+        mLevels[mNext] = level;
+        mVoltages[mNext] = voltage;
+        mTemperatures[mNext] = temperature;
+        mPlugged[mNext] = plugged;
+        mNext = (mNext + 1) % mTimes.length;
+        if (mSize < mTimes.length) {
+            mSize++;
+        }
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index
+     *            0 is the oldest sample
+     */
+    public synchronized long getTime(int index) {
+        return mTimes[toPosition(index)];
+    }
+
+    public synchronized int getLevel(int index) {
+        return mLevels[toPosition(index)];
+    }
+
+    public synchronized int getVoltage(int index) {
+        return mVoltages[toPosition(index)];
+    }
+
+    public synchronized int getTemperature(int index) {
+        return mTemperatures[toPosition(index)];
+    }
+
+    /**
+     * @return BatteryManager.BATTERY_PLUGGED_XXX, 0 means unplugged
+     */
+    public synchronized int getPlugged(int index) {
+        return mPlugged[toPosition(index)];
+    }
+
+    /**
+     * @return level of the newest sample minus level of the oldest one, 0 if
+     *         there are less than two samples
+     */
+    public synchronized int getLevelDelta() {
+        return mSize < 2 ? 0 : getLevel(mSize - 1) - getLevel(0);
+    }
+
+    public synchronized int getVoltageDelta() {
+        return mSize < 2 ? 0 : getVoltage(mSize - 1) - getVoltage(0);
+    }
+
+    public synchronized int getTemperatureDelta() {
+        return mSize < 2 ? 0 : getTemperature(mSize - 1) - getTemperature(0);
+    }
+
+    /**
+     * @return time between the oldest and the newest sample in ms
+     */
+    public synchronized long getDuration() {
+        return mSize < 2 ? 0 : getTime(mSize - 1) - getTime(0);
+    }
+
+    /**
+     * A sample is only recorded when the battery changes, so the last sample
+     * at or before fromTime is exported too as the state when the window
+     * starts. Without it, a single change in the window would give no delta.
+     *
+     * @param fromTime
+     *            start of the window, inclusive
+     * @param toTime
+     *            end of the window, inclusive
+     * @return the baseline and the samples in the window in the binary format
+     *         read by parse()
+     */
+    public synchronized byte[] export(long fromTime, long toTime) {
+        int first = 0;
+        while (first + 1 < mSize && getTime(first + 1) <= fromTime) {
+            first++;
+        }
+        int end = first;
+        while (end < mSize && getTime(end) <= toTime) {
+            end++;
+        }
+        int count = end - first;
+        long baseTime = count > 0 ? getTime(first) : 0;
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + count * SAMPLE_SIZE);
+        buffer.putLong(baseTime);
+        buffer.putInt(count);
+        for (int i = first; i < end; i++) {
+            int position = toPosition(i);
+            long time = mTimes[position];
+            buffer.putInt((int) (time - baseTime));
+            buffer.putShort((short) mLevels[position]);
+            buffer.putShort((short) mVoltages[position]);
+            buffer.putShort((short) mTemperatures[position]);
+            buffer.put((byte) mPlugged[position]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @param data
+     *            returned by export()
+     * @return samples in data, null if data is broken
+     */
+    public static BatteryHistory parse(byte[] data) {
+        if (null == data || data.length < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long baseTime = buffer.getLong();
+        int count = buffer.getInt();
+        if (count < 0 || data.length != HEADER_SIZE + count * SAMPLE_SIZE) {
+            return null;
+        }
+
+        BatteryHistory history = new BatteryHistory(Math.max(1, count));
+        for (int i = 0; i < count; i++) {
+            history.add(baseTime + buffer.getInt(), buffer.getShort(), buffer.getShort(),
+                    buffer.getShort(), buffer.get());
+        }
+        return history;
+    }
+
+    private int toPosition(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + mSize);
+        }
+        return (mNext - mSize + index + mTimes.length) % mTimes.length;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count and latency histogram of calls per method.
+ *
+ * record() only touches atomic counters, so calls from several binder
+ * threads do not wait for each other. Latencies are kept in buckets of power
+ * of two microseconds, bucket i holds [2^i, 2^(i+1)) us, so a percentile in
+ * the report is the upper bound of its bucket.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class CallStatistics {
+    private final static int                   BUCKET_COUNT = 32;
+
+    private volatile boolean                   mEnabled     = false;
+    private ConcurrentHashMap<String, Counter> mCounters    = new ConcurrentHashMap<String, Counter>();
+
+    private static class Counter {
+        final String          name;
+        final AtomicLong      count   = new AtomicLong();
+        final AtomicLong      total   = new AtomicLong();
+        final AtomicLong      max     = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        // total when the report is sorted, it must not change while sorting
+        long                  sortKey = 0;
+
+        Counter(String name) {
+            this.name = name;
+        }
+    }
+
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * @param method
+     *            name of the called method
+     * @param nanos
+     *            latency of the call in ns
+     */
+    public void record(String method, long nanos) {
+        Counter counter = mCounters.get(method);
+        if (null == counter) {
+            Counter newCounter = new Counter(method);
+            counter = mCounters.putIfAbsent(method, newCounter);
+            if (null == counter) {
+                counter = newCounter;
+            }
+        }
+
+        counter.count.incrementAndGet();
+        counter.total.addAndGet(nanos);
+        long max = counter.max.get();
+        while (nanos > max && !counter.max.compareAndSet(max, nanos)) {
+            max = counter.max.get();
+        }
+        long micros = nanos / 1000;
+        int bucket = micros <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+        counter.buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+    }
+
+    public void reset() {
+        mCounters.clear();
+    }
+
+    /**
+     * @return one line for each method sorted by total time, such as
+     *         "getTopActivity[12, total 40.9ms, avg 3.41ms, p50<4ms, p90<8ms, max 20.12ms]"
+     */
+    public synchronized String getReport() {
+        List<Counter> counters = new ArrayList<Counter>(mCounters.values());
+        for (Counter counter : counters) {
+            counter.sortKey = counter.total.get();
+        }
+        Collections.sort(counters, new Comparator<Counter>() {
+
+            public int compare(Counter lhs, Counter rhs) {
+                return lhs.sortKey < rhs.sortKey ? 1 : (lhs.sortKey == rhs.sortKey ? 0 : -1);
+            }
+        });
+
+        StringBuilder builder = new StringBuilder();
+        for (Counter counter : counters) {
+            long count = counter.count.get();
+            if (0 == count) {
+                continue;
+            }
+            if (builder.length() > 0) {
+                builder.append("\n");
+            }
+            long total = counter.total.get();
+            builder.append(String.format(
+                    "%s[%s, total %.2fms, avg %.2fms, p50<%s, p90<%s, max %.2fms]", counter.name,
+                    count, total / 1000000f, total / count / 1000000f,
+                    getPercentile(counter, count, 50), getPercentile(counter, count, 90),
+                    counter.max.get() / 1000000f));
+        }
+        return builder.toString();
+    }
+
+    private String getPercentile(Counter counter, long count, int percent) {
+        long target = (count * percent + 99) / 100;
+        long seen = 0;
+        int i = 0;
+        for (; i < BUCKET_COUNT - 1; i++) {
+            seen += counter.buckets.get(i);
+            if (seen >= target) {
+                break;
+            }
+        }
+        long bound = 1L << (i + 1);
+        return bound < 1000 ? bound + "us" : bound / 1000 + "ms";
+    }
+}
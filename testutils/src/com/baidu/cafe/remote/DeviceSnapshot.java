@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Values of several device states gathered by Arms in one call, e.g.
+ *
+ * <pre>
+ * DeviceSnapshot snapshot = armser.getDeviceSnapshot(new String[] {
+ *         DeviceSnapshot.BATTERY_LEVEL, DeviceSnapshot.WIFI_ENABLED });
+ * int level = snapshot.getInt(DeviceSnapshot.BATTERY_LEVEL, -1);
+ * </pre>
+ *
+ * Every field has the value of the Armser method of the same name.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class DeviceSnapshot implements Parcelable {
+    public final static String   BATTERY_STATUS        = "batteryStatus";
+    public final static String   BATTERY_HEALTH        = "batteryHealth";
+    public final static String   BATTERY_PRESENT       = "batteryPresent";
+    public final static String   BATTERY_LEVEL         = "batteryLevel";
+    public final static String   BATTERY_SCALE         = "batteryScale";
+    public final static String   BATTERY_PLUGGED       = "batteryPlugged";
+    public final static String   BATTERY_VOLTAGE       = "batteryVoltage";
+    public final static String   BATTERY_TEMPERATURE   = "batteryTemperature";
+    public final static String   SCREEN_ON             = "screenOn";
+    public final static String   SCREEN_LOCKED         = "screenLocked";
+    public final static String   SCREEN_BRIGHTNESS     = "screenBrightness";
+    public final static String   WIFI_STATE            = "wifiState";
+    public final static String   WIFI_ENABLED          = "wifiEnabled";
+    public final static String   NETWORK_ENABLE        = "networkEnable";
+    public final static String   NETWORK_TYPE          = "networkType";
+    public final static String   DATA_STATE            = "dataState";
+    public final static String   FLIGHT_MODE_STATE     = "flightModeState";
+    public final static String   SIM_CARD_STATE        = "simCardState";
+    public final static String   BLUETOOTH_ENABLED     = "bluetoothEnabled";
+    public final static String   MEMORY_INTERNAL_AVAIL = "memoryInternalAvail";
+    public final static String   STORAGE_CARD_AVAIL    = "storageCardAvail";
+    public final static String   AUDIO_MODE            = "audioMode";
+    public final static String   RINGTONE_MODE         = "ringtoneMode";
+    public final static String   MUSIC_ACTIVE          = "musicActive";
+    public final static String   TOP_ACTIVITY          = "topActivity";
+    public final static String   TOP_PACKAGE           = "topPackage";
+    public final static String   SYSTEM_TIME           = "systemTime";
+
+    /**
+     * all of the fields, used when no field is given
+     */
+    public final static String[] ALL_FIELDS            = { BATTERY_STATUS, BATTERY_HEALTH,
+            BATTERY_PRESENT, BATTERY_LEVEL, BATTERY_SCALE, BATTERY_PLUGGED, BATTERY_VOLTAGE,
+            BATTERY_TEMPERATURE, SCREEN_ON, SCREEN_LOCKED, SCREEN_BRIGHTNESS, WIFI_STATE,
+            WIFI_ENABLED, NETWORK_ENABLE, NETWORK_TYPE, DATA_STATE, FLIGHT_MODE_STATE,
+            SIM_CARD_STATE, BLUETOOTH_ENABLED, MEMORY_INTERNAL_AVAIL, STORAGE_CARD_AVAIL,
+            AUDIO_MODE, RINGTONE_MODE, MUSIC_ACTIVE, TOP_ACTIVITY, TOP_PACKAGE, SYSTEM_TIME };
+
+    private String[]             mFields               = null;
+    private String[]             mValues               = null;
+    private long                 mTime                 = 0;
+
+    public final static Parcelable.Creator<DeviceSnapshot> CREATOR = new Parcelable.Creator<DeviceSnapshot>() {
+        public DeviceSnapshot createFromParcel(Parcel in) {
+            return new DeviceSnapshot(in);
+        }
+
+        public DeviceSnapshot[] newArray(int size) {
+            return new DeviceSnapshot[size];
+        }
+    };
+
+    /**
+     * @param fields
+     *            names of the fields
+     * @param values
+     *            values of the fields, null for an unknown field
+     * @param time
+     *            System.currentTimeMillis() on device when it is gathered
+     */
+    public DeviceSnapshot(String[] fields, String[] values, long time) {
+        mFields = fields;
+        mValues = values;
+        mTime = time;
+    }
+
+    private DeviceSnapshot(Parcel in) {
+        mFields = in.createStringArray();
+        mValues = in.createStringArray();
+        mTime = in.readLong();
+    }
+
+    /**
+     * @return System.currentTimeMillis() on device when it is gathered
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    /**
+     * @return names of the fields in the order of request
+     */
+    public String[] getFields() {
+        return mFields;
+    }
+
+    /**
+     * @param field
+     *            name of the field
+     * @return value of the field, null if it is not in the snapshot
+     */
+    public String getString(String field) {
+        for (int i = 0; i < mFields.length; i++) {
+            if (field != null && field.equals(mFields[i])) {
+                return mValues[i];
+            }
+        }
+        return null;
+    }
+
+    public int getInt(String field, int defaultValue) {
+        return (int) getLong(field, defaultValue);
+    }
+
+    public long getLong(String field, long defaultValue) {
+        String value = getString(field);
+        if (null == value) {
+            return defaultValue;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            e.printStackTrace();
+            return defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String field, boolean defaultValue) {
+        String value = getString(field);
+        return null == value ? defaultValue : Boolean.valueOf(value);
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeStringArray(mFields);
+        out.writeStringArray(mValues);
+        out.writeLong(mTime);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < mFields.length; i++) {
+            builder.append(i > 0 ? " " : "").append(mFields[i]).append('=').append(mValues[i]);
+        }
+        return builder.toString();
+    }
+}
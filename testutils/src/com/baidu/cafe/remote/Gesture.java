@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * A whole touch gesture which is sent to the remote side at once and played
+ * there with precise pacing. Every event has a pointer id and a time in
+ * milliseconds from the start of the gesture, e.g. a 300ms swipe
+ *
+ * <pre>
+ * new Gesture().down(0, 100, 500, 0).move(0, 100, 400, 100).move(0, 100, 300, 200)
+ *         .up(0, 100, 200, 300);
+ * </pre>
+ *
+ * Moves of different pointers at the same time are merged into one event,
+ * moves of the same pointer are always separate events.
+ * Pointers other than the first one are only supported by instrumentation.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class Gesture implements Parcelable {
+    public final static int ACTION_DOWN = 0;
+    public final static int ACTION_UP   = 1;
+    public final static int ACTION_MOVE = 2;
+
+    /**
+     * time between two moves of pinch(), rotate() and swipe(), one frame of
+     * a 60fps screen
+     */
+    public final static long FRAME_TIME = 16;
+
+    private int             mSize       = 0;
+    private int[]           mActions    = new int[8];
+    private int[]           mPointerIds = new int[8];
+    private float[]         mXs         = new float[8];
+    private float[]         mYs         = new float[8];
+    private long[]          mTimes      = new long[8];
+
+    public final static Parcelable.Creator<Gesture> CREATOR = new Parcelable.Creator<Gesture>() {
+        public Gesture createFromParcel(Parcel in) {
+            return new Gesture(in);
+        }
+
+        public Gesture[] newArray(int size) {
+            return new Gesture[size];
+        }
+    };
+
+    public Gesture() {
+    }
+
+    private Gesture(Parcel in) {
+        mSize = in.readInt();
+        mActions = in.createIntArray();
+        mPointerIds = in.createIntArray();
+        mXs = in.createFloatArray();
+        mYs = in.createFloatArray();
+        mTimes = in.createLongArray();
+    }
+
+    /**
+     * a touch from (fromX, fromY) to (toX, toY) with one step per frame, it
+     * is a click when stepCount is 0
+     *
+     * @see #touch(float, float, float, float, int, int, long)
+     * @return the gesture
+     */
+    public static Gesture touch(float fromX, float toX, float fromY, float toY, int stepCount,
+            int longClickTime) {
+        return touch(fromX, toX, fromY, toY, stepCount, longClickTime, FRAME_TIME);
+    }
+
+    /**
+     * a touch from (fromX, fromY) to (toX, toY), it is a click when stepCount
+     * is 0
+     *
+     * @param fromX
+     *            the x value of the original dot
+     * @param toX
+     *            the x value of the destination dot
+     * @param fromY
+     *            the y value of the original value
+     * @param toY
+     *            the y value of the destination dot
+     * @param stepCount
+     *            the step to touch from X to Y
+     * @param longClickTime
+     *            touch time length
+     * @param stepTime
+     *            milliseconds between two steps, 0 sends the steps one right
+     *            after another
+     * @return the gesture
+     */
+    public static Gesture touch(float fromX, float toX, float fromY, float toY, int stepCount,
+            int longClickTime, long stepTime) {
+        Gesture gesture = new Gesture().down(0, fromX, fromY, 0);
+        float xStep = 0;
+        float yStep = 0;
+
+        if (stepCount > 0) {
+            xStep = (toX - fromX) / stepCount;
+            yStep = (toY - fromY) / stepCount;
+        }
+
+        float x = fromX;
+        float y = fromY;
+        long time = 0;
+        for (int i = 0; i < stepCount; ++i) {
+            y += yStep;
+            x += xStep;
+            time += stepTime;
+            gesture.move(0, x, y, time);
+        }
+
+        if (longClickTime > 0) {
+            gesture.move(0, x, y, time);
+        }
+        return gesture.up(0, x, y, time + Math.max(longClickTime, 0));
+    }
+
+    /**
+     * a swipe from (fromX, fromY) to (toX, toY) whose steps are spread evenly
+     * over duration
+     *
+     * @param fromX
+     *            the x value of the original dot
+     * @param toX
+     *            the x value of the destination dot
+     * @param fromY
+     *            the y value of the original value
+     * @param toY
+     *            the y value of the destination dot
+     * @param stepCount
+     *            the step to touch from X to Y
+     * @param duration
+     *            milliseconds from down to up
+     * @return the gesture
+     */
+    public static Gesture swipe(float fromX, float toX, float fromY, float toY, int stepCount,
+            long duration) {
+        Gesture gesture = new Gesture().down(0, fromX, fromY, 0);
+        int steps = stepCount > 0 ? stepCount : 1;
+        for (int i = 1; i < steps; i++) {
+            gesture.move(0, fromX + (toX - fromX) * i / steps, fromY + (toY - fromY) * i / steps,
+                    duration * i / steps);
+        }
+        return gesture.move(0, toX, toY, duration).up(0, toX, toY, duration);
+    }
+
+    /**
+     * two fingers move apart or together horizontally around a center
+     *
+     * @param centerX
+     *            x of the center
+     * @param centerY
+     *            y of the center
+     * @param fromDistance
+     *            distance between the fingers at first
+     * @param toDistance
+     *            distance between the fingers at last
+     * @param duration
+     *            milliseconds from down to up
+     * @return the gesture
+     */
+    public static Gesture pinch(float centerX, float centerY, float fromDistance,
+            float toDistance, long duration) {
+        float from = fromDistance / 2;
+        float to = toDistance / 2;
+        return linear(new float[] { centerX - from, centerY, centerX + from, centerY },
+                new float[] { centerX - to, centerY, centerX + to, centerY }, duration);
+    }
+
+    /**
+     * two fingers at the opposite ends of a diameter turn around the center
+     *
+     * @param centerX
+     *            x of the center
+     * @param centerY
+     *            y of the center
+     * @param radius
+     *            distance from a finger to the center
+     * @param fromDegrees
+     *            angle of the first finger at first, 0 means the right
+     * @param toDegrees
+     *            angle of the first finger at last, clockwise on screen if it
+     *            is greater than fromDegrees
+     * @param duration
+     *            milliseconds from down to up
+     * @return the gesture
+     */
+    public static Gesture rotate(float centerX, float centerY, float radius, float fromDegrees,
+            float toDegrees, long duration) {
+        Gesture gesture = new Gesture();
+        int frameCount = getFrameCount(duration);
+        for (int frame = 0; frame <= frameCount; frame++) {
+            double radians = Math.toRadians(fromDegrees + (toDegrees - fromDegrees) * frame
+                    / frameCount);
+            float dx = (float) (radius * Math.cos(radians));
+            float dy = (float) (radius * Math.sin(radians));
+            long time = duration * frame / frameCount;
+            if (0 == frame) {
+                gesture.down(0, centerX + dx, centerY + dy, 0);
+                gesture.down(1, centerX - dx, centerY - dy, 0);
+            } else {
+                gesture.move(0, centerX + dx, centerY + dy, time);
+                gesture.move(1, centerX - dx, centerY - dy, time);
+            }
+            if (frameCount == frame) {
+                gesture.up(1, centerX - dx, centerY - dy, time);
+                gesture.up(0, centerX + dx, centerY + dy, time);
+            }
+        }
+        return gesture;
+    }
+
+    /**
+     * several fingers side by side swipe together
+     *
+     * @param fingerCount
+     *            the number of fingers
+     * @param fromX
+     *            x of the first finger at first
+     * @param toX
+     *            x of the first finger at last
+     * @param fromY
+     *            y of the fingers at first
+     * @param toY
+     *            y of the fingers at last
+     * @param spacing
+     *            horizontal distance between two fingers
+     * @param duration
+     *            milliseconds from down to up
+     * @return the gesture
+     */
+    public static Gesture swipe(int fingerCount, float fromX, float toX, float fromY, float toY,
+            float spacing, long duration) {
+        float[] start = new float[fingerCount * 2];
+        float[] end = new float[fingerCount * 2];
+        for (int i = 0; i < fingerCount; i++) {
+            start[i * 2] = fromX + spacing * i;
+            start[i * 2 + 1] = fromY;
+            end[i * 2] = toX + spacing * i;
+            end[i * 2 + 1] = toY;
+        }
+        return linear(start, end, duration);
+    }
+
+    /**
+     * every finger moves straight at a constant speed, a move of all fingers
+     * every FRAME_TIME
+     *
+     * @param start
+     *            the start position e.g. new float[]{0,0,1,2}; means two
+     *            pointers start at {0,0} and {1,2}
+     * @param end
+     *            the end position e.g. new float[]{100,110,200,220}; means
+     *            two pointers end at {100,110} and {200,220}
+     * @param duration
+     *            milliseconds from down to up
+     * @return the gesture
+     */
+    public static Gesture linear(float[] start, float[] end, long duration) {
+        Gesture gesture = new Gesture();
+        int pointerCount = start.length / 2;
+        int frameCount = getFrameCount(duration);
+        for (int i = 0; i < pointerCount; i++) {
+            gesture.down(i, start[i * 2], start[i * 2 + 1], 0);
+        }
+        for (int frame = 1; frame <= frameCount; frame++) {
+            long time = duration * frame / frameCount;
+            for (int i = 0; i < pointerCount; i++) {
+                gesture.move(i, start[i * 2] + (end[i * 2] - start[i * 2]) * frame / frameCount,
+                        start[i * 2 + 1] + (end[i * 2 + 1] - start[i * 2 + 1]) * frame
+                                / frameCount, time);
+            }
+        }
+        for (int i = pointerCount - 1; i >= 0; i--) {
+            gesture.up(i, end[i * 2], end[i * 2 + 1], duration);
+        }
+        return gesture;
+    }
+
+    private static int getFrameCount(long duration) {
+        return (int) Math.max(1, duration / FRAME_TIME);
+    }
+
+    /**
+     * put down a pointer
+     *
+     * @param pointerId
+     *            id of the pointer, 0 for the first finger
+     * @param x
+     *            x on screen
+     * @param y
+     *            y on screen
+     * @param time
+     *            milliseconds from the start of the gesture
+     * @return this gesture
+     */
+    public Gesture down(int pointerId, float x, float y, long time) {
+        return add(ACTION_DOWN, pointerId, x, y, time);
+    }
+
+    /**
+     * move a pointer which is down
+     *
+     * @see #down(int, float, float, long)
+     * @return this gesture
+     */
+    public Gesture move(int pointerId, float x, float y, long time) {
+        return add(ACTION_MOVE, pointerId, x, y, time);
+    }
+
+    /**
+     * lift a pointer which is down
+     *
+     * @see #down(int, float, float, long)
+     * @return this gesture
+     */
+    public Gesture up(int pointerId, float x, float y, long time) {
+        return add(ACTION_UP, pointerId, x, y, time);
+    }
+
+    private Gesture add(int action, int pointerId, float x, float y, long time) {
+        if (mSize == mActions.length) {
+            int capacity = Math.max(8, mSize * 2);
+            mActions = copyOf(mActions, capacity);
+            mPointerIds = copyOf(mPointerIds, capacity);
+            mXs = copyOf(mXs, capacity);
+            mYs = copyOf(mYs, capacity);
+            mTimes = copyOf(mTimes, capacity);
+        }
+        mActions[mSize] = action;
+        mPointerIds[mSize] = pointerId;
+        mXs[mSize] = x;
+        mYs[mSize] = y;
+        mTimes[mSize] = time;
+        mSize++;
+        return this;
+    }
+
+    private static int[] copyOf(int[] array, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, capacity));
+        return copy;
+    }
+
+    private static float[] copyOf(float[] array, int capacity) {
+        float[] copy = new float[capacity];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, capacity));
+        return copy;
+    }
+
+    private static long[] copyOf(long[] array, int capacity) {
+        long[] copy = new long[capacity];
+        System.arraycopy(array, 0, copy, 0, Math.min(array.length, capacity));
+        return copy;
+    }
+
+    /**
+     * @return the number of events
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public int getAction(int index) {
+        return mActions[index];
+    }
+
+    public int getPointerId(int index) {
+        return mPointerIds[index];
+    }
+
+    public float getX(int index) {
+        return mXs[index];
+    }
+
+    public float getY(int index) {
+        return mYs[index];
+    }
+
+    public long getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * @return the number of different pointers
+     */
+    public int getPointerCount() {
+        int count = 0;
+        for (int i = 0; i < mSize; i++) {
+            if (mActions[i] == ACTION_DOWN && indexOf(mPointerIds, i, mPointerIds[i]) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int indexOf(int[] array, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return milliseconds from the first event to the last one
+     */
+    public long getDuration() {
+        return mSize == 0 ? 0 : mTimes[mSize - 1] - mTimes[0];
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mSize);
+        out.writeIntArray(copyOf(mActions, mSize));
+        out.writeIntArray(copyOf(mPointerIds, mSize));
+        out.writeFloatArray(copyOf(mXs, mSize));
+        out.writeFloatArray(copyOf(mYs, mSize));
+        out.writeLongArray(copyOf(mTimes, mSize));
+    }
+
+    @Override
+    public String toString() {
+        return "gesture[" + mSize + " events, " + getDuration() + "ms]";
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Consecutive lines read from the log tail of Arms. Every line has a
+ * sequence number, the next read starts at getNextSeq(), e.g.
+ *
+ * <pre>
+ * LogChunk chunk = armser.readLogTail(seq, 500);
+ * for (String line : chunk.getLines()) {
+ *     // check line
+ * }
+ * seq = chunk.getNextSeq();
+ * </pre>
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class LogChunk implements Parcelable {
+    private long     mFirstSeq = 0;
+    private String[] mLines    = null;
+
+    public final static Parcelable.Creator<LogChunk> CREATOR = new Parcelable.Creator<LogChunk>() {
+        public LogChunk createFromParcel(Parcel in) {
+            return new LogChunk(in);
+        }
+
+        public LogChunk[] newArray(int size) {
+            return new LogChunk[size];
+        }
+    };
+
+    /**
+     * @param firstSeq
+     *            sequence number of lines[0]
+     * @param lines
+     *            lines in order
+     */
+    public LogChunk(long firstSeq, String[] lines) {
+        mFirstSeq = firstSeq;
+        mLines = lines;
+    }
+
+    private LogChunk(Parcel in) {
+        mFirstSeq = in.readLong();
+        mLines = in.createStringArray();
+    }
+
+    /**
+     * @return sequence number of the first line, it is larger than the
+     *         requested one if older lines have been dropped
+     */
+    public long getFirstSeq() {
+        return mFirstSeq;
+    }
+
+    /**
+     * @return sequence number to read from next time
+     */
+    public long getNextSeq() {
+        return mFirstSeq + mLines.length;
+    }
+
+    public String[] getLines() {
+        return mLines;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeLong(mFirstSeq);
+        out.writeStringArray(mLines);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * One view lookup of a batch query. The view is searched as
+ * getViewProperties() does, and getKeys of the targetNumber-th matched view
+ * are returned. More conditions can be added by and(), e.g.
+ * 
+ * <pre>
+ * new ViewQuery("name", "Button", SEARCHMODE_COMPLETE_MATCHING, 1, new String[] { "mText" })
+ *         .and("mID", "id/ok", SEARCHMODE_COMPLETE_MATCHING).visible();
+ * </pre>
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class ViewQuery implements Parcelable {
+    public String   searchKey    = null;
+    public String   searchValue  = null;
+    public int      searchMode   = 1;
+    public int      targetNumber = 1;
+    public String[] getKeys      = null;
+    public boolean  onlyVisible  = false;
+
+    private ArrayList<String>  mAndKeys   = new ArrayList<String>();
+    private ArrayList<String>  mAndValues = new ArrayList<String>();
+    private ArrayList<Integer> mAndModes  = new ArrayList<Integer>();
+
+    public final static Parcelable.Creator<ViewQuery> CREATOR = new Parcelable.Creator<ViewQuery>() {
+        public ViewQuery createFromParcel(Parcel in) {
+            return new ViewQuery(in);
+        }
+
+        public ViewQuery[] newArray(int size) {
+            return new ViewQuery[size];
+        }
+    };
+
+    /**
+     * @param searchKey
+     *            property's name use to search, "name" means class name
+     * @param searchValue
+     *            property's value use to search
+     * @param searchMode
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_INCLUDE_MATCHING or
+     *            SEARCHMODE_PREFIX_MATCHING
+     * @param targetNumber
+     *            target index in search result, starting from 1
+     * @param getKeys
+     *            property's name use to get, "coordinate" means
+     *            "x,y,width,height" on screen, "childCount" means the number
+     *            of children
+     */
+    public ViewQuery(String searchKey, String searchValue, int searchMode, int targetNumber,
+            String[] getKeys) {
+        this.searchKey = searchKey;
+        this.searchValue = searchValue;
+        this.searchMode = searchMode;
+        this.targetNumber = targetNumber;
+        this.getKeys = getKeys;
+    }
+
+    private ViewQuery(Parcel in) {
+        searchKey = in.readString();
+        searchValue = in.readString();
+        searchMode = in.readInt();
+        targetNumber = in.readInt();
+        getKeys = in.createStringArray();
+        onlyVisible = in.readInt() != 0;
+        int andCount = in.readInt();
+        for (int i = 0; i < andCount; i++) {
+            and(in.readString(), in.readString(), in.readInt());
+        }
+    }
+
+    /**
+     * add a condition which must match too
+     * 
+     * @param searchKey
+     *            property's name use to search, "name" means class name
+     * @param searchValue
+     *            property's value use to search
+     * @param searchMode
+     *            SEARCHMODE_COMPLETE_MATCHING, SEARCHMODE_INCLUDE_MATCHING or
+     *            SEARCHMODE_PREFIX_MATCHING
+     * @return this query
+     */
+    public ViewQuery and(String searchKey, String searchValue, int searchMode) {
+        mAndKeys.add(searchKey);
+        mAndValues.add(searchValue);
+        mAndModes.add(searchMode);
+        return this;
+    }
+
+    /**
+     * only match views whose family are all visible
+     * 
+     * @return this query
+     */
+    public ViewQuery visible() {
+        onlyVisible = true;
+        return this;
+    }
+
+    /**
+     * @return the number of conditions added by and()
+     */
+    public int getAndCount() {
+        return mAndKeys.size();
+    }
+
+    public String getAndKey(int index) {
+        return mAndKeys.get(index);
+    }
+
+    public String getAndValue(int index) {
+        return mAndValues.get(index);
+    }
+
+    public int getAndMode(int index) {
+        return mAndModes.get(index);
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeString(searchKey);
+        out.writeString(searchValue);
+        out.writeInt(searchMode);
+        out.writeInt(targetNumber);
+        out.writeStringArray(getKeys);
+        out.writeInt(onlyVisible ? 1 : 0);
+        out.writeInt(mAndKeys.size());
+        for (int i = 0; i < mAndKeys.size(); i++) {
+            out.writeString(mAndKeys.get(i));
+            out.writeString(mAndValues.get(i));
+            out.writeInt(mAndModes.get(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(searchKey + " == " + searchValue);
+        for (int i = 0; i < mAndKeys.size(); i++) {
+            builder.append(" && " + mAndKeys.get(i) + " == " + mAndValues.get(i));
+        }
+        if (onlyVisible) {
+            builder.append(" && visible");
+        }
+        return builder.append(" #" + targetNumber).toString();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2011 Baidu.com Inc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.baidu.cafe.remote;
+
+import java.util.ArrayList;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Answers of a batch of ViewQuery in the order of the queries.
+ *
+ * @date 2026-10-18
+ * @version
+ * @todo
+ */
+public class ViewQueryResult implements Parcelable {
+    private ArrayList<String[]> mProperties = new ArrayList<String[]>();
+
+    public final static Parcelable.Creator<ViewQueryResult> CREATOR = new Parcelable.Creator<ViewQueryResult>() {
+        public ViewQueryResult createFromParcel(Parcel in) {
+            return new ViewQueryResult(in);
+        }
+
+        public ViewQueryResult[] newArray(int size) {
+            return new ViewQueryResult[size];
+        }
+    };
+
+    public ViewQueryResult() {
+    }
+
+    private ViewQueryResult(Parcel in) {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            mProperties.add(in.createStringArray());
+        }
+    }
+
+    /**
+     * @param properties
+     *            values of getKeys of the next query, null if the view is not
+     *            found
+     */
+    public void add(String[] properties) {
+        mProperties.add(properties);
+    }
+
+    /**
+     * @param index
+     *            index of the query in the batch
+     * @return values of getKeys of the query, null if the view is not found
+     */
+    public String[] get(int index) {
+        return mProperties.get(index);
+    }
+
+    public int size() {
+        return mProperties.size();
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mProperties.size());
+        for (String[] properties : mProperties) {
+            out.writeStringArray(properties);
+        }
+    }
+}